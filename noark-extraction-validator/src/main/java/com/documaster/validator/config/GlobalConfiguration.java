@@ -26,8 +26,19 @@ public class GlobalConfiguration {
 	@Parameter(names = { HELP_SHORT, HELP_LONG }, help = true)
 	private Boolean showHelp = false;
 
+	private static final String TRAIN = "-train";
+	@Parameter(names = TRAIN,
+			description = "Validates a bundled sample extraction package instead of running a command. Used to record "
+					+ "the classes loaded by a typical execution in order to create a class data sharing archive")
+	private Boolean train = false;
+
 	public Boolean showHelp() {
 
 		return showHelp;
 	}
+
+	public Boolean train() {
+
+		return train;
+	}
 }
@@ -30,7 +30,11 @@ import com.documaster.validator.config.delegates.ConfigurableStorage;
 import com.documaster.validator.config.delegates.ReportConfiguration;
 import com.documaster.validator.config.delegates.StorageConfiguration;
 import com.documaster.validator.config.properties.Noark5Properties;
-import com.documaster.validator.config.validators.DirectoryValidator;
+import com.documaster.validator.config.validators.ExtractionPackageValidator;
+import com.documaster.validator.config.validators.PositiveIntegerValidator;
+import com.documaster.validator.converters.ConverterType;
+import com.documaster.validator.validation.noark5.parsers.XMLParserType;
+import com.documaster.validator.validation.utils.XMLInputType;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,8 +50,10 @@ public abstract class Noark5Command extends Command<Noark5Properties>
 
 	private static final String EXTRACTION_DIRECTORY = "-extraction";
 	@Parameter(
-			names = EXTRACTION_DIRECTORY, description = "The location of the extraction package",
-			required = true, converter = FileConverter.class, validateValueWith = DirectoryValidator.class)
+			names = EXTRACTION_DIRECTORY,
+			description = "The location of the extraction package: a directory or a .zip, .tar, .tar.gz or .tgz "
+					+ "archive. Archives are read without being unpacked",
+			required = true, converter = FileConverter.class, validateValueWith = ExtractionPackageValidator.class)
 	private File extractionDirectory;
 
 	private static final String IGNORE_NON_COMPLIANT_XML = "-ignore-non-compliant-xml";
@@ -66,6 +72,51 @@ public abstract class Noark5Command extends Command<Noark5Properties>
 					+ "copied to the execution information section in the report.")
 	private File customSchemaLocation;
 
+	private static final String SCHEMA_CACHE_LOCATION = "-schema-cache-location";
+	@Parameter(names = SCHEMA_CACHE_LOCATION,
+			description = "The location of the dir where converted XSD schemas are cached between executions. "
+					+ "Only used if no precompiled conversion of the schemas by the selected converter is available. "
+					+ "The dir is ignored unless it is owned by the current user and only writable by its owner.",
+			converter = FileConverter.class)
+	private File schemaCacheLocation = new File(
+			System.getProperty("user.home"), ".cache" + File.separator + "noark-extraction-validator");
+
+	private static final String SCHEMA_CONVERTER = "-schema-converter";
+	@Parameter(names = SCHEMA_CONVERTER,
+			description = "The converter of the XSD schemas. Only used if no precompiled or cached conversion of the "
+					+ "schemas by the same converter is available. The precompiled conversions are made by MODEL")
+	private ConverterType schemaConverterType = ConverterType.MODEL;
+
+	private static final String THREADS = "-threads";
+	@Parameter(names = THREADS,
+			description = "The number of threads used to parse the XML files of the extraction package. Large "
+					+ "arkivstruktur.xml files are split and parsed with multiple threads as well",
+			validateValueWith = PositiveIntegerValidator.class)
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	private static final String SINGLE_PASS = "-single-pass";
+	@Parameter(names = SINGLE_PASS,
+			description = "If specified, each XML file of the extraction package is read only once: it is checked "
+					+ "for well-formedness, validated against all of its schemas, and stored in the same pass. "
+					+ "Large arkivstruktur.xml files are not split in this mode")
+	private boolean singlePass = false;
+
+	private static final String XML_PARSER = "-xml-parser";
+	@Parameter(names = XML_PARSER,
+			description = "The parser used to read the XML files of the extraction package while storing them. "
+					+ "STAX uses the StAX implementation found on the class path (e.g. Woodstox or Aalto) or the "
+					+ "JDK's. SCANNER is a faster scanner of UTF-8 encoded files without a DOCTYPE that falls back to "
+					+ "SAX for other files. Only SCANNER records the byte offsets of the stored elements in their "
+					+ "files (_start_offset and _end_offset). Not used with " + SINGLE_PASS)
+	private XMLParserType xmlParserType = XMLParserType.SAX;
+
+	private static final String XML_INPUT = "-xml-input";
+	@Parameter(names = XML_INPUT,
+			description = "How the XML files of the extraction package are read. CHANNEL reads large blocks and is "
+					+ "meant for remote filesystems (e.g. NFS). MEMORY_MAPPED maps the files into memory and is meant "
+					+ "for local filesystems. The chunks of large arkivstruktur.xml files are read in the same way")
+	private XMLInputType xmlInputType = XMLInputType.BUFFERED;
+
 	@ParametersDelegate
 	private ReportConfiguration reportConfiguration = new ReportConfiguration();
 
@@ -120,6 +171,66 @@ public abstract class Noark5Command extends Command<Noark5Properties>
 		this.customSchemaLocation = customSchemaLocation;
 	}
 
+	public File getSchemaCacheLocation() {
+
+		return schemaCacheLocation;
+	}
+
+	public void setSchemaCacheLocation(File schemaCacheLocation) {
+
+		this.schemaCacheLocation = schemaCacheLocation;
+	}
+
+	public ConverterType getSchemaConverterType() {
+
+		return schemaConverterType;
+	}
+
+	public void setSchemaConverterType(ConverterType schemaConverterType) {
+
+		this.schemaConverterType = schemaConverterType;
+	}
+
+	public int getThreads() {
+
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+
+		this.threads = threads;
+	}
+
+	public boolean getSinglePass() {
+
+		return singlePass;
+	}
+
+	public void setSinglePass(boolean singlePass) {
+
+		this.singlePass = singlePass;
+	}
+
+	public XMLParserType getXMLParserType() {
+
+		return xmlParserType;
+	}
+
+	public void setXMLParserType(XMLParserType xmlParserType) {
+
+		this.xmlParserType = xmlParserType;
+	}
+
+	public XMLInputType getXMLInputType() {
+
+		return xmlInputType;
+	}
+
+	public void setXMLInputType(XMLInputType xmlInputType) {
+
+		this.xmlInputType = xmlInputType;
+	}
+
 	@Override
 	public ReportConfiguration getReportConfiguration() {
 
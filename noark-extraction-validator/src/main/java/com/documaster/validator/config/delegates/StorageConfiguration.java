@@ -19,6 +19,8 @@ package com.documaster.validator.config.delegates;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
+import com.documaster.validator.config.validators.NonNegativeLongValidator;
+import com.documaster.validator.config.validators.PositiveIntegerValidator;
 import com.documaster.validator.exceptions.ReportingException;
 import com.documaster.validator.storage.core.Storage;
 
@@ -45,6 +47,33 @@ public class StorageConfiguration implements Delegate {
 	@Parameter(names = SERVER_LOCATION, description = "The server location")
 	private String serverLocation = "localhost";
 
+	private static final String BATCH_SIZE = "-batch-size";
+	@Parameter(names = BATCH_SIZE,
+			description = "The maximum number of rows that are written to the database in a single transaction",
+			validateValueWith = PositiveIntegerValidator.class)
+	private int batchSize = 1000;
+
+	private static final String COMMIT_INTERVAL = "-commit-interval";
+	@Parameter(names = COMMIT_INTERVAL,
+			description = "The number of milliseconds after which the rows written since the last commit are committed "
+					+ "along with the next row, even if there are fewer of them than " + BATCH_SIZE,
+			validateValueWith = NonNegativeLongValidator.class)
+	private long commitInterval = 1000;
+
+	private static final String WRITERS = "-writers";
+	@Parameter(names = WRITERS,
+			description = "The number of threads that write the parsed data to the database, each with a connection "
+					+ "of its own. The data of a table is always written by the same thread",
+			validateValueWith = PositiveIntegerValidator.class)
+	private int writers = Math.min(Runtime.getRuntime().availableProcessors(), 4);
+
+	private static final String WRITE_QUEUE_CAPACITY = "-write-queue-capacity";
+	@Parameter(names = WRITE_QUEUE_CAPACITY,
+			description = "The maximum number of parsed items that can wait to be written by each of the writers. "
+					+ "Parsing pauses while the queue of a writer is full",
+			validateValueWith = PositiveIntegerValidator.class)
+	private int writeQueueCapacity = 10000;
+
 	public Storage.StorageType getStorageType() {
 
 		return storageType;
@@ -95,6 +124,46 @@ public class StorageConfiguration implements Delegate {
 		this.serverLocation = serverLocation;
 	}
 
+	public int getBatchSize() {
+
+		return batchSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+
+		this.batchSize = batchSize;
+	}
+
+	public long getCommitInterval() {
+
+		return commitInterval;
+	}
+
+	public void setCommitInterval(long commitInterval) {
+
+		this.commitInterval = commitInterval;
+	}
+
+	public int getWriters() {
+
+		return writers;
+	}
+
+	public void setWriters(int writers) {
+
+		this.writers = writers;
+	}
+
+	public int getWriteQueueCapacity() {
+
+		return writeQueueCapacity;
+	}
+
+	public void setWriteQueueCapacity(int writeQueueCapacity) {
+
+		this.writeQueueCapacity = writeQueueCapacity;
+	}
+
 	@Override
 	public void validate() {
 
@@ -0,0 +1,41 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.config.validators;
+
+import java.io.File;
+import java.text.MessageFormat;
+
+import com.beust.jcommander.IValueValidator;
+import com.beust.jcommander.ParameterException;
+import com.documaster.validator.validation.noark5.source.PackageSource;
+
+public class ExtractionPackageValidator implements IValueValidator<File> {
+
+	@Override
+	public void validate(String name, File value) throws ParameterException {
+
+		if (!value.exists() || !PackageSource.isSupported(value)) {
+
+			String errorMessage = MessageFormat.format(
+					"{0}: Invalid/missing extraction package directory or archive ({1}).", name,
+					value.getAbsolutePath());
+
+			throw new ParameterException(errorMessage);
+		}
+	}
+}
@@ -0,0 +1,37 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.config.validators;
+
+import java.text.MessageFormat;
+
+import com.beust.jcommander.IValueValidator;
+import com.beust.jcommander.ParameterException;
+
+public class PositiveIntegerValidator implements IValueValidator<Integer> {
+
+	@Override
+	public void validate(String name, Integer value) throws ParameterException {
+
+		if (value == null || value < 1) {
+
+			String errorMessage = MessageFormat.format("{0}: The value must be at least 1 ({1}).", name, value);
+
+			throw new ParameterException(errorMessage);
+		}
+	}
+}
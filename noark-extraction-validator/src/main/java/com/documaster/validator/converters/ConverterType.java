@@ -0,0 +1,49 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.converters;
+
+import com.documaster.validator.converters.xsd.XsdConverter;
+import com.documaster.validator.converters.xsd.XsdModelConverter;
+
+/**
+ * The available XSD schema {@link Converter} implementations.
+ */
+public enum ConverterType {
+
+	/**
+	 * Walks the schema-derived model of XJC without generating or compiling any code ({@link XsdModelConverter}).
+	 */
+	MODEL,
+
+	/**
+	 * Generates, compiles and inspects the JAXB classes of the schemas ({@link XsdConverter}).
+	 */
+	XJC;
+
+	public Converter createConverter() {
+
+		switch (this) {
+			case MODEL:
+				return new XsdModelConverter();
+			case XJC:
+				return new XsdConverter();
+			default:
+				throw new IllegalStateException("Unknown converter type: " + this);
+		}
+	}
+}
@@ -0,0 +1,180 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.converters.catalog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.documaster.validator.converters.Converter;
+import com.documaster.validator.exceptions.ConversionException;
+import com.documaster.validator.storage.model.BaseItem;
+import com.documaster.validator.storage.model.Field;
+import com.documaster.validator.storage.model.Item;
+import com.documaster.validator.storage.model.ItemDef;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * A serializable snapshot of the {@link ItemDef}s and enumeration {@link Item}s produced by a {@link Converter}.
+ * <p/>
+ * Catalogs for the bundled Noark 5 schemas are generated at build time by {@link ItemDefCatalogGenerator} and loaded
+ * from the class path at runtime, so that the schemas do not need to be converted on every execution.
+ */
+public class ItemDefCatalog implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String FILE_NAME = "itemdefs.ser";
+
+	/**
+	 * The version of the catalog format. Must be incremented whenever the structure of the generated {@link ItemDef}s
+	 * changes, so that catalogs cached by previous versions are not reused.
+	 */
+	public static final int FORMAT_VERSION = 3;
+
+	/**
+	 * The classes a catalog consists of; no other class is deserialized when a catalog is read
+	 */
+	private static final Set<String> CATALOG_CLASSES = new HashSet<>(Arrays.asList(
+			ItemDefCatalog.class.getName(), ItemDef.class.getName(), Item.class.getName(),
+			BaseItem.class.getName(), Field.class.getName(), Field.FieldType.class.getName(),
+			ArrayList.class.getName(), HashMap.class.getName(), LinkedHashMap.class.getName(),
+			AtomicInteger.class.getName(), Enum.class.getName(), Number.class.getName(), Boolean.class.getName(),
+			Byte.class.getName(), Short.class.getName(), Integer.class.getName(), Long.class.getName(),
+			Float.class.getName(), Double.class.getName()));
+
+	private final Map<String, ItemDef> itemDefs;
+
+	private final List<Item> items;
+
+	public ItemDefCatalog(Map<String, ItemDef> itemDefs, List<Item> items) {
+
+		this.itemDefs = new HashMap<>(itemDefs);
+		this.items = new ArrayList<>(items);
+	}
+
+	public ItemDefCatalog(Converter converter) throws Exception {
+
+		this(converter.getItemDefs(), converter.getItems());
+	}
+
+	public Map<String, ItemDef> getItemDefs() {
+
+		return itemDefs;
+	}
+
+	public List<Item> getItems() {
+
+		return items;
+	}
+
+	/**
+	 * Writes the catalog to the specified file, creating its parent directories if necessary.
+	 */
+	public void write(File file) throws IOException {
+
+		FileUtils.forceMkdir(file.getParentFile());
+
+		try (
+				OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+				ObjectOutputStream oos = new ObjectOutputStream(os)) {
+			oos.writeObject(this);
+		}
+	}
+
+	/**
+	 * Reads a catalog from the specified stream. A stream that contains any other objects than the ones a catalog
+	 * consists of is rejected before these are created.
+	 */
+	public static ItemDefCatalog read(InputStream is) throws IOException {
+
+		try (ObjectInputStream ois = new CatalogInputStream(new BufferedInputStream(is))) {
+			return (ItemDefCatalog) ois.readObject();
+		} catch (ClassNotFoundException | ClassCastException ex) {
+			throw new ConversionException("Invalid item definition catalog", ex);
+		}
+	}
+
+	/**
+	 * Loads the precompiled catalog of the specified schema location from the class path.
+	 *
+	 * @param schemaLocation
+	 * 		The class path location of the schemas the catalog was generated from (e.g. noark5/noark55)
+	 * @return The catalog or null if no catalog was bundled for the specified location
+	 */
+	public static ItemDefCatalog load(String schemaLocation) throws IOException {
+
+		InputStream is = ItemDefCatalog.class.getClassLoader().getResourceAsStream(getLocation(schemaLocation));
+
+		if (is == null) {
+			return null;
+		}
+
+		return read(is);
+	}
+
+	public static String getLocation(String schemaLocation) {
+
+		return schemaLocation + "/" + FILE_NAME;
+	}
+
+	/**
+	 * An {@link ObjectInputStream} that only resolves the classes of a catalog.
+	 */
+	private static final class CatalogInputStream extends ObjectInputStream {
+
+		private CatalogInputStream(InputStream is) throws IOException {
+
+			super(is);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+
+			if (!CATALOG_CLASSES.contains(desc.getName())) {
+				throw new InvalidClassException(desc.getName(), "Not a class of an item definition catalog");
+			}
+
+			return super.resolveClass(desc);
+		}
+
+		@Override
+		protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+
+			throw new InvalidClassException("Proxy classes are not part of an item definition catalog");
+		}
+	}
+}
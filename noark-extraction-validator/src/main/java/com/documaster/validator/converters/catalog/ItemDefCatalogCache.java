@@ -0,0 +1,197 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.converters.catalog;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Set;
+
+import com.documaster.validator.converters.ConverterType;
+import com.documaster.validator.validation.utils.ChecksumCalculator;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An on-disk cache of {@link ItemDefCatalog}s keyed by the {@link ConverterType} and the SHA-256 checksum of the XSD
+ * schemas they were converted from.
+ * <p/>
+ * Only the bundled Noark 5 schemas are converted (custom schemas are used for the validation of the XML files only),
+ * so the cache is only used when no precompiled catalog of the bundled schemas is available or when the schemas are
+ * converted by another {@link ConverterType} than the one of the precompiled catalogs.
+ * <p/>
+ * Cache failures are never fatal: an unreadable entry is treated as a miss and an entry that cannot be written is
+ * simply skipped.
+ * <p/>
+ * On POSIX filesystems the cache directory is only used if it is owned by the current user and not writable by anyone
+ * else, so that no other user can plant an entry in it; a missing directory is created accessible to its owner only.
+ */
+public class ItemDefCatalogCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ItemDefCatalogCache.class);
+
+	private static final boolean IS_POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+	private final File cacheDirectory;
+
+	private final ConverterType converterType;
+
+	private boolean isUntrustedReported = false;
+
+	public ItemDefCatalogCache(File cacheDirectory, ConverterType converterType) {
+
+		this.cacheDirectory = cacheDirectory;
+		this.converterType = converterType;
+	}
+
+	/**
+	 * Retrieves the cached catalog of the specified schemas.
+	 *
+	 * @return The catalog or null if the schemas have not been cached
+	 */
+	public ItemDefCatalog get(List<File> schemas) {
+
+		File cacheFile = getCacheFile(schemas);
+
+		if (cacheFile == null || !cacheFile.isFile() || !isTrusted()) {
+			return null;
+		}
+
+		try (InputStream is = new FileInputStream(cacheFile)) {
+
+			ItemDefCatalog catalog = ItemDefCatalog.read(is);
+			LOGGER.info("Loaded the converted XSD schemas from cache {}", cacheFile.getAbsolutePath());
+
+			return catalog;
+
+		} catch (Exception ex) {
+			LOGGER.warn("Ignoring invalid cached XSD schema conversion " + cacheFile.getAbsolutePath(), ex);
+			return null;
+		}
+	}
+
+	/**
+	 * Caches the catalog of the specified schemas.
+	 */
+	public void put(List<File> schemas, ItemDefCatalog catalog) {
+
+		File cacheFile = getCacheFile(schemas);
+
+		if (cacheFile == null) {
+			return;
+		}
+
+		File tempFile = null;
+
+		try {
+			createCacheDirectory();
+
+			if (!isTrusted()) {
+				return;
+			}
+
+			tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheDirectory);
+			catalog.write(tempFile);
+
+			// Concurrent executions must never see a partially written entry
+			Files.move(
+					tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+
+		} catch (Exception ex) {
+			LOGGER.warn("Could not cache the converted XSD schemas in " + cacheDirectory.getAbsolutePath(), ex);
+			FileUtils.deleteQuietly(tempFile);
+		}
+	}
+
+	private void createCacheDirectory() throws IOException {
+
+		if (cacheDirectory.isDirectory()) {
+			return;
+		}
+
+		if (IS_POSIX) {
+			Files.createDirectories(cacheDirectory.toPath(), PosixFilePermissions.asFileAttribute(
+					PosixFilePermissions.fromString("rwx------")));
+		} else {
+			FileUtils.forceMkdir(cacheDirectory);
+		}
+	}
+
+	/**
+	 * Checks whether the cache directory is owned by the current user and not writable by anyone else.
+	 */
+	private boolean isTrusted() {
+
+		if (!IS_POSIX) {
+			return true;
+		}
+
+		Path directory = cacheDirectory.toPath();
+
+		try {
+			PosixFileAttributes attributes =
+					Files.readAttributes(directory, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			Set<PosixFilePermission> permissions = attributes.permissions();
+
+			if (attributes.isDirectory()
+					&& attributes.owner().getName().equals(System.getProperty("user.name"))
+					&& !permissions.contains(PosixFilePermission.GROUP_WRITE)
+					&& !permissions.contains(PosixFilePermission.OTHERS_WRITE)) {
+				return true;
+			}
+
+		} catch (IOException ex) {
+			LOGGER.debug("Could not read the attributes of " + directory, ex);
+		}
+
+		if (!isUntrustedReported) {
+			LOGGER.warn("Ignoring the XSD schema cache {}: it must be a directory owned by the current user and not "
+					+ "writable by others", cacheDirectory.getAbsolutePath());
+			isUntrustedReported = true;
+		}
+
+		return false;
+	}
+
+	private File getCacheFile(List<File> schemas) {
+
+		String checksum = ChecksumCalculator.getFilesSha256Checksum(schemas);
+
+		if (checksum == null) {
+			return null;
+		}
+
+		// Catalogs of different converters are kept apart, so that a converter is never served another one's result
+		String converterName = converterType.name().toLowerCase();
+
+		return new File(
+				cacheDirectory, "v" + ItemDefCatalog.FORMAT_VERSION + "-" + converterName + "-" + checksum + ".ser");
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.converters.catalog;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import com.documaster.validator.config.commands.Noark53Command;
+import com.documaster.validator.config.commands.Noark54Command;
+import com.documaster.validator.config.commands.Noark55Command;
+import com.documaster.validator.config.commands.Noark5Command;
+import com.documaster.validator.converters.Converter;
+import com.documaster.validator.converters.ConverterType;
+import com.documaster.validator.validation.noark5.model.Noark5PackageStructure;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates an {@link ItemDefCatalog} for each bundled Noark 5 schema set.
+ * <p/>
+ * Executed during the build with the output directory of the compiled classes as its only argument.
+ */
+public class ItemDefCatalogGenerator {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ItemDefCatalogGenerator.class);
+
+	/**
+	 * The converter the precompiled catalogs are generated with.
+	 */
+	public static final ConverterType CONVERTER_TYPE = ConverterType.MODEL;
+
+	private ItemDefCatalogGenerator() {
+		// Prevent instantiation
+	}
+
+	public static void main(String... args) throws Exception {
+
+		Validate.isTrue(args.length == 1, "Usage: ItemDefCatalogGenerator <output directory>");
+
+		File outputDirectory = new File(args[0]);
+
+		List<Noark5Command> commands = Arrays.asList(
+				new Noark53Command(), new Noark54Command(), new Noark55Command());
+
+		for (Noark5Command command : commands) {
+			generate(command.getDefaultSchemaLocation(), outputDirectory);
+		}
+	}
+
+	private static void generate(String schemaLocation, File outputDirectory) throws Exception {
+
+		LOGGER.info("Generating the item definition catalog of {} ...", schemaLocation);
+
+		File schemasDirectory = Files.createTempDirectory("noark-extraction-validator-").toFile();
+
+		try {
+			// The package structure provides the same list of schemas that would be converted at runtime
+			Noark5PackageStructure structure = new Noark5PackageStructure(schemasDirectory, schemasDirectory);
+			structure.extractNoarkSchemas(schemaLocation);
+
+			Converter converter = CONVERTER_TYPE.createConverter();
+			converter.convert(structure.getAllNoarkSchemaFiles());
+
+			new ItemDefCatalog(converter).write(
+					new File(outputDirectory, ItemDefCatalog.getLocation(schemaLocation)));
+
+		} finally {
+			FileUtils.deleteQuietly(schemasDirectory);
+		}
+	}
+}
@@ -0,0 +1,56 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.converters.xsd;
+
+import java.util.Map;
+
+/**
+ * Loads classes from byte code held in memory.
+ */
+class ByteArrayClassLoader extends ClassLoader {
+
+	private final Map<String, byte[]> classes;
+
+	ByteArrayClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+
+		super(parent);
+
+		this.classes = classes;
+	}
+
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException {
+
+		byte[] byteCode = classes.get(name);
+
+		if (byteCode == null) {
+			throw new ClassNotFoundException(name);
+		}
+
+		// Packages are not defined implicitly (the item definitions are named after them)
+		int packageSeparatorIndex = name.lastIndexOf('.');
+		if (packageSeparatorIndex > 0) {
+			String packageName = name.substring(0, packageSeparatorIndex);
+			if (getPackage(packageName) == null) {
+				definePackage(packageName, null, null, null, null, null, null, null);
+			}
+		}
+
+		return defineClass(name, byteCode, 0, byteCode.length);
+	}
+}
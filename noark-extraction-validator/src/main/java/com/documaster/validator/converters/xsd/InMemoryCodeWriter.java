@@ -0,0 +1,81 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.converters.xsd;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.tools.JavaFileObject;
+
+import com.sun.codemodel.CodeWriter;
+import com.sun.codemodel.JPackage;
+
+/**
+ * A {@link CodeWriter} that keeps the Java sources generated by XJC in memory instead of writing them to disk.
+ */
+class InMemoryCodeWriter extends CodeWriter {
+
+	private static final String JAVA_EXTENSION = ".java";
+
+	private final Map<String, ByteArrayOutputStream> sources = new LinkedHashMap<>();
+
+	InMemoryCodeWriter() {
+
+		encoding = StandardCharsets.UTF_8.name();
+	}
+
+	@Override
+	public OutputStream openBinary(JPackage pkg, String fileName) throws IOException {
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+		// Resources other than Java sources are of no use to the conversion
+		if (fileName.endsWith(JAVA_EXTENSION)) {
+			String simpleName = fileName.substring(0, fileName.length() - JAVA_EXTENSION.length());
+			sources.put(pkg.isUnnamed() ? simpleName : pkg.name() + "." + simpleName, os);
+		}
+
+		return os;
+	}
+
+	@Override
+	public void close() {
+
+		// Nothing to close
+	}
+
+	/**
+	 * Returns the generated sources as compilation units.
+	 */
+	List<JavaFileObject> getCompilationUnits() {
+
+		List<JavaFileObject> compilationUnits = new ArrayList<>(sources.size());
+
+		for (Map.Entry<String, ByteArrayOutputStream> source : sources.entrySet()) {
+			compilationUnits.add(InMemoryJavaFileManager.createSourceFile(
+					source.getKey(), new String(source.getValue().toByteArray(), StandardCharsets.UTF_8)));
+		}
+
+		return compilationUnits;
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.converters.xsd;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+
+/**
+ * A {@link JavaFileManager} that collects the byte code of the compiled classes in memory instead of writing class
+ * files to disk.
+ * <p/>
+ * Reading of the compilation classpath is delegated to the standard file manager.
+ */
+class InMemoryJavaFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+
+	private final Map<String, ByteArrayOutputStream> classes = new TreeMap<>();
+
+	InMemoryJavaFileManager(JavaFileManager fileManager) {
+
+		super(fileManager);
+	}
+
+	@Override
+	public JavaFileObject getJavaFileForOutput(
+			Location location, final String className, JavaFileObject.Kind kind, FileObject sibling) {
+
+		return new SimpleJavaFileObject(toUri(className, kind), kind) {
+
+			@Override
+			public OutputStream openOutputStream() {
+
+				ByteArrayOutputStream os = new ByteArrayOutputStream();
+				classes.put(className, os);
+
+				return os;
+			}
+		};
+	}
+
+	/**
+	 * Returns the byte code of the compiled classes sorted by their binary names.
+	 */
+	Map<String, byte[]> getClasses() {
+
+		Map<String, byte[]> byteCode = new TreeMap<>();
+
+		for (Map.Entry<String, ByteArrayOutputStream> cls : classes.entrySet()) {
+			byteCode.put(cls.getKey(), cls.getValue().toByteArray());
+		}
+
+		return byteCode;
+	}
+
+	static JavaFileObject createSourceFile(String className, final String content) {
+
+		return new SimpleJavaFileObject(toUri(className, JavaFileObject.Kind.SOURCE), JavaFileObject.Kind.SOURCE) {
+
+			@Override
+			public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+
+				return content;
+			}
+		};
+	}
+
+	private static URI toUri(String className, JavaFileObject.Kind kind) {
+
+		return URI.create("mem:///" + className.replace('.', '/') + kind.extension);
+	}
+}
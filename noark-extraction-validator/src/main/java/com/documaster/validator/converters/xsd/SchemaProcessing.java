@@ -0,0 +1,102 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.converters.xsd;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.documaster.validator.exceptions.ConversionException;
+
+/**
+ * Processes independent XSD schemas concurrently.
+ * <p/>
+ * Only the expensive, self-contained part of a conversion (parsing, binding and compiling a schema) should be
+ * processed concurrently. The results are returned in the order of the schemas, so that they can be merged into the
+ * converter model sequentially and deterministically.
+ */
+final class SchemaProcessing {
+
+	private SchemaProcessing() {
+		// Prevent instantiation
+	}
+
+	interface SchemaTask<T> {
+
+		T process(File schema) throws Exception;
+	}
+
+	/**
+	 * Processes the specified schemas on a pool of up to one thread per available processor.
+	 *
+	 * @return The results of the task in the order of the specified schemas
+	 */
+	static <T> List<T> processConcurrently(List<File> schemas, SchemaTask<T> task) throws IOException {
+
+		if (schemas.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		int threads = Math.min(schemas.size(), Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+		try {
+			List<Future<T>> futures = new ArrayList<>(schemas.size());
+
+			for (File schema : schemas) {
+				futures.add(executor.submit(() -> task.process(schema)));
+			}
+
+			List<T> results = new ArrayList<>(schemas.size());
+
+			for (Future<T> future : futures) {
+				results.add(getResult(future));
+			}
+
+			return results;
+
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static <T> T getResult(Future<T> future) throws IOException {
+
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new ConversionException("The XSD schemas conversion has been interrupted", ex);
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new ConversionException(cause);
+		}
+	}
+}
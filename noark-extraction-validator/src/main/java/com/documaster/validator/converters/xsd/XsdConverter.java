@@ -21,11 +21,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.lang.reflect.ParameterizedType;
-import java.net.URL;
-import java.net.URLClassLoader;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.text.MessageFormat;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -33,12 +29,14 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
 import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
 import javax.tools.ToolProvider;
 
 import com.documaster.validator.converters.Converter;
 import com.documaster.validator.exceptions.ConversionException;
-import com.documaster.validator.logging.StreamRedirection;
 import com.documaster.validator.storage.model.Field;
 import com.documaster.validator.storage.model.Item;
 import com.documaster.validator.storage.model.ItemDef;
@@ -46,7 +44,6 @@ import com.sun.codemodel.JCodeModel;
 import com.sun.tools.xjc.api.S2JJAXBModel;
 import com.sun.tools.xjc.api.SchemaCompiler;
 import com.sun.tools.xjc.api.XJC;
-import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.InputSource;
@@ -56,6 +53,9 @@ import org.xml.sax.InputSource;
  * <p/>
  * Accepts a list of schema files to be converted.
  * <p/>
+ * The schemas are bound to Java classes with XJC. The classes are generated, compiled and loaded in memory, so that
+ * no temporary files are written during the conversion.
+ * <p/>
  * The implementation is such that fields of extending classes will simply be
  * added to the root {@link ItemDef} definition.
  */
@@ -63,10 +63,6 @@ public class XsdConverter implements Converter {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(XsdConverter.class);
 
-	private File tempDir;
-
-	private File sourceDir;
-
 	private Set<String> processedClasses;
 
 	private Map<String, ItemDef> itemDefs = new HashMap<>();
@@ -90,36 +86,24 @@ public class XsdConverter implements Converter {
 
 		LOGGER.info("Converting XSD schemas ...");
 
+		// The schemas are bound and compiled concurrently, while the compiled classes are merged into the item
+		// definitions in the order of the schemas. Only the merge relies on the processed classes.
+		List<Map<String, byte[]>> compiledSchemas =
+				SchemaProcessing.processConcurrently(files, XsdConverter::compileSchema);
+
 		processedClasses = new HashSet<>();
-		for (File xsdSchema : files) {
-			performConversion(xsdSchema);
+		for (Map<String, byte[]> classes : compiledSchemas) {
+			createItemDefinitions(classes);
 		}
 		processedClasses.clear();
 
 		LOGGER.info("XSD schemas conversion finished.");
 	}
 
-	private void performConversion(File xsdSchema) throws IOException, ClassNotFoundException {
-
-		createTemporaryDirectories();
+	private static Map<String, byte[]> compileSchema(File xsdSchema) throws IOException {
 
-		convertXsdToJavaSource(xsdSchema, sourceDir);
-		compileJavaSource();
-		createItemDefinitions();
-
-		FileUtils.deleteQuietly(tempDir);
-	}
-
-	private void createTemporaryDirectories() throws IOException {
-
-		tempDir = Files.createTempDirectory(null).toFile();
-		validateTemporaryDirectory(tempDir);
-
-		sourceDir = new File(tempDir, "source");
-		boolean created = sourceDir.mkdirs();
-		if (!created) {
-			throw new ConversionException("Could not create necessary temporary directories");
-		}
+		InMemoryCodeWriter codeWriter = convertXsdToJavaSource(xsdSchema);
+		return compileJavaSource(codeWriter.getCompilationUnits());
 	}
 
 	// The deprecation suppression is due to the SchemaCompiler.getOptions() method. The
@@ -127,7 +111,7 @@ public class XsdConverter implements Converter {
 	// resolve class name conflicts in an easy fashion (i.e. without using bindings). See
 	// SchemaCompiler#getOptions() for more information.
 	@SuppressWarnings("deprecation")
-	private void convertXsdToJavaSource(File xsdSchema, File sourceDir) throws IOException {
+	private static InMemoryCodeWriter convertXsdToJavaSource(File xsdSchema) throws IOException {
 
 		SchemaCompiler sc = XJC.createSchemaCompiler();
 
@@ -145,53 +129,54 @@ public class XsdConverter implements Converter {
 			S2JJAXBModel model = sc.bind();
 			JCodeModel jCodeModel = model.generateCode(null, null);
 
-			StreamRedirection.silenceSystemStreams(StreamRedirection.SystemStream.OUT);
-			StreamRedirection.redirectSystemStream(StreamRedirection.SystemStream.ERR, LOGGER,
-					StreamRedirection.LogLevel.ERROR);
-
-			jCodeModel.build(sourceDir);
+			InMemoryCodeWriter codeWriter = new InMemoryCodeWriter();
+			jCodeModel.build(codeWriter);
 
-			StreamRedirection
-					.resetSystemStreams(StreamRedirection.SystemStream.OUT, StreamRedirection.SystemStream.ERR);
+			return codeWriter;
 		}
 	}
 
-	private void compileJavaSource() {
-
-		List<File> sourceFiles = new ArrayList<>(FileUtils.listFiles(sourceDir, new String[] { "java" }, true));
-
-		List<String> sourceFilePaths = new ArrayList<>();
-		for (File sourceFile : sourceFiles) {
-			sourceFilePaths.add(sourceFile.getAbsolutePath());
-		}
+	private static Map<String, byte[]> compileJavaSource(List<JavaFileObject> compilationUnits) throws IOException {
 
 		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
 		if (compiler == null) {
 			throw new ConversionException("A Java Compiler must exist in the environment.");
 		}
 
-		int result = compiler.run(null, null, null, sourceFilePaths.toArray(new String[sourceFilePaths.size()]));
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
 
-		if (result != 0) {
-			throw new ConversionException("Conversion of XSD schemas failed due to compilation issues.");
+		try (InMemoryJavaFileManager fileManager = new InMemoryJavaFileManager(
+				compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8))) {
+
+			boolean compiled = compiler.getTask(null, fileManager, diagnostics, null, null, compilationUnits).call();
+
+			for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+				if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+					LOGGER.error(diagnostic.toString());
+				}
+			}
+
+			if (!compiled) {
+				throw new ConversionException("Conversion of XSD schemas failed due to compilation issues.");
+			}
+
+			return fileManager.getClasses();
 		}
 	}
 
-	private void createItemDefinitions() throws IOException, ClassNotFoundException {
-
-		List<File> classFiles = new ArrayList<>(FileUtils.listFiles(sourceDir, new String[] { "class" }, true));
+	private void createItemDefinitions(Map<String, byte[]> classes) throws ClassNotFoundException {
 
 		Map<String, Set<String>> references = new HashMap<>();
 
-		try (URLClassLoader classLoader = URLClassLoader.newInstance(new URL[] { sourceDir.toURI().toURL() })) {
-			for (File classFile : classFiles) {
-				Class<?> cls = Class.forName(getClassNameFromFile(sourceDir, classFile), false, classLoader);
-				if (processedClasses.contains(cls.getName())) {
-					continue;
-				}
-				createItemDefinition(cls, references);
-				processedClasses.add(cls.getName());
+		ClassLoader classLoader = new ByteArrayClassLoader(classes, XsdConverter.class.getClassLoader());
+
+		for (String className : classes.keySet()) {
+			Class<?> cls = Class.forName(className, false, classLoader);
+			if (processedClasses.contains(cls.getName())) {
+				continue;
 			}
+			createItemDefinition(cls, references);
+			processedClasses.add(cls.getName());
 		}
 
 		// Create references
@@ -307,26 +292,4 @@ public class XsdConverter implements Converter {
 		}
 		references.get(referenceItemDef.getFullName()).add(srcItemDef.getFullName());
 	}
-
-	private void validateTemporaryDirectory(File dir) {
-
-		Path dirPath = dir.toPath();
-		if (!dir.isDirectory() || !Files.isWritable(dirPath) || !Files.isReadable(dirPath)) {
-			throw new ConversionException(
-					MessageFormat.format(
-							"The specified directory ({0}) does not exist or is not readable/writeable.",
-							dir.getAbsolutePath()));
-		}
-	}
-
-	private String getClassNameFromFile(File sourceDir, File classFile) {
-
-		Path classFilePath = classFile.toPath();
-
-		Path sourcePath = sourceDir.toPath();
-
-		String relativePath = sourcePath.relativize(classFilePath).toString();
-
-		return relativePath.substring(0, relativePath.lastIndexOf('.')).replace(File.separator, ".");
-	}
 }
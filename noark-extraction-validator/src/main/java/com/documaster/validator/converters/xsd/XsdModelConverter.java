@@ -0,0 +1,340 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.converters.xsd;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.documaster.validator.converters.Converter;
+import com.documaster.validator.exceptions.ConversionException;
+import com.documaster.validator.storage.model.Field;
+import com.documaster.validator.storage.model.Item;
+import com.documaster.validator.storage.model.ItemDef;
+import com.sun.codemodel.JCodeModel;
+import com.sun.codemodel.JPackage;
+import com.sun.tools.xjc.ModelLoader;
+import com.sun.tools.xjc.Options;
+import com.sun.tools.xjc.model.CBuiltinLeafInfo;
+import com.sun.tools.xjc.model.CClassInfo;
+import com.sun.tools.xjc.model.CElementInfo;
+import com.sun.tools.xjc.model.CEnumConstant;
+import com.sun.tools.xjc.model.CEnumLeafInfo;
+import com.sun.tools.xjc.model.CPropertyInfo;
+import com.sun.tools.xjc.model.CReferencePropertyInfo;
+import com.sun.tools.xjc.model.CTypeInfo;
+import com.sun.tools.xjc.model.Model;
+import com.sun.tools.xjc.util.ErrorReceiverFilter;
+import org.apache.commons.lang.ClassUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.InputSource;
+
+/**
+ * Converts XSD Schemas into {@link ItemDef} definitions by walking the schema-derived bean model of XJC directly.
+ * <p/>
+ * Unlike {@link XsdConverter}, no Java source is generated, compiled, or loaded. Classes, enumerations and properties
+ * are read from the XJC {@link Model} that is built on top of the parsed XSOM schema set, so that the {@link ItemDef}
+ * names and fields follow the same binding rules (and produce the same tables) as the classes {@link XsdConverter}
+ * compiles and inspects through reflection.
+ */
+public class XsdModelConverter implements Converter {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(XsdModelConverter.class);
+
+	// Classes XJC generates next to the beans
+	private static final String OBJECT_FACTORY = "ObjectFactory";
+	private static final String PACKAGE_INFO = "package-info";
+
+	private Set<String> processedClasses;
+
+	private Map<String, ItemDef> itemDefs = new HashMap<>();
+
+	private List<Item> items = new ArrayList<>();
+
+	@Override
+	public Map<String, ItemDef> getItemDefs() {
+
+		return itemDefs;
+	}
+
+	@Override
+	public List<Item> getItems() {
+
+		return items;
+	}
+
+	@Override
+	public void convert(List<File> files) throws IOException {
+
+		LOGGER.info("Converting XSD schemas ...");
+
+		// The schema models are loaded concurrently and walked in the order of the schemas
+		List<Model> models = SchemaProcessing.processConcurrently(files, XsdModelConverter::loadModel);
+
+		processedClasses = new HashSet<>();
+		for (Model model : models) {
+			createItemDefinitions(model);
+		}
+		processedClasses.clear();
+
+		LOGGER.info("XSD schemas conversion finished.");
+	}
+
+	// The deprecation suppression is due to the Options.compatibilityMode field. It is the setting the XJC
+	// SchemaCompiler used by XsdConverter runs with, and automatic name conflict resolution depends on it.
+	@SuppressWarnings("deprecation")
+	private static Model loadModel(File xsdSchema) {
+
+		Options options = new Options();
+		options.compatibilityMode = Options.EXTENSION;
+		options.automaticNameConflictResolution = true;
+		options.addGrammar(new InputSource(xsdSchema.toURI().toString()));
+
+		Model model = ModelLoader.load(
+				options, new JCodeModel(),
+				new ErrorReceiverFilter(new ConversionErrorListener(XsdModelConverter.class)));
+
+		if (model == null) {
+			throw new ConversionException("Could not build the model of XSD schema " + xsdSchema.getName());
+		}
+
+		return model;
+	}
+
+	private void createItemDefinitions(Model model) {
+
+		Map<String, Set<String>> references = new HashMap<>();
+
+		// XJC generates an ObjectFactory for every package, but a package-info only for packages with schema-bound
+		// classes or elements whose namespace it can annotate
+		Set<JPackage> packages = new LinkedHashSet<>();
+		Set<JPackage> annotatedPackages = new LinkedHashSet<>();
+
+		for (CClassInfo classInfo : model.beans().values()) {
+
+			annotatedPackages.add(classInfo.getOwnerPackage());
+
+			if (processedClasses.add(classInfo.fullName())) {
+				createItemDefinitionForClass(classInfo, references);
+			}
+		}
+
+		for (CEnumLeafInfo enumInfo : model.enums().values()) {
+
+			packages.add(enumInfo.parent.getOwnerPackage());
+
+			if (processedClasses.add(enumInfo.fullName())) {
+				createItemDefinitionForEnum(enumInfo);
+			}
+		}
+
+		for (CElementInfo elementInfo : model.getAllElements()) {
+			annotatedPackages.add(elementInfo.parent.getOwnerPackage());
+		}
+
+		packages.addAll(annotatedPackages);
+
+		for (JPackage pkg : packages) {
+			createItemDefinitionForGeneratedClass(pkg, OBJECT_FACTORY);
+		}
+		for (JPackage pkg : annotatedPackages) {
+			createItemDefinitionForGeneratedClass(pkg, PACKAGE_INFO);
+		}
+
+		// Create references
+		for (Map.Entry<String, Set<String>> referenceMap : references.entrySet()) {
+			if (!itemDefs.containsKey(referenceMap.getKey())) {
+				continue;
+			}
+			for (String targetReference : referenceMap.getValue()) {
+				if (!itemDefs.containsKey(targetReference)) {
+					continue;
+				}
+				ItemDef sourceItemDef = itemDefs.get(referenceMap.getKey());
+				ItemDef targetItemDef = itemDefs.get(targetReference);
+				sourceItemDef.createReferenceTo(targetItemDef);
+			}
+		}
+	}
+
+	private void createItemDefinitionForGeneratedClass(JPackage pkg, String className) {
+
+		String fullName = pkg.name() + "." + className;
+
+		if (processedClasses.add(fullName)) {
+
+			ItemDef itemDef = new ItemDef(pkg.name(), className);
+
+			if (!itemDefs.containsKey(itemDef.getFullName())) {
+				itemDefs.put(itemDef.getFullName(), itemDef);
+			}
+		}
+	}
+
+	private void createItemDefinitionForEnum(CEnumLeafInfo enumInfo) {
+
+		LOGGER.debug("Creating an item definition from enum {}", enumInfo.fullName());
+
+		ItemDef itemDef = createItemDef(enumInfo);
+		itemDef.addField("value", Field.FieldType.getFromJavaType(String.class));
+
+		for (CEnumConstant constant : enumInfo.members) {
+
+			Item item = new Item(itemDef);
+			item.add("value", constant.getLexicalValue());
+
+			items.add(item);
+		}
+
+		itemDefs.put(itemDef.getFullName(), itemDef);
+	}
+
+	private void createItemDefinitionForClass(CClassInfo classInfo, Map<String, Set<String>> references) {
+
+		LOGGER.debug("Creating an item definition from class {}", classInfo.fullName());
+
+		// Fields of extending classes are added to the definition of their root class
+		ItemDef itemDef = createItemDef(classInfo);
+
+		if (itemDefs.containsKey(itemDef.getFullName())) {
+			itemDef = itemDefs.get(itemDef.getFullName());
+		} else {
+			itemDefs.put(itemDef.getFullName(), itemDef);
+		}
+
+		for (CPropertyInfo property : classInfo.getProperties()) {
+			addProperty(property, itemDef, references);
+		}
+	}
+
+	/**
+	 * Adds the field that XJC generates for the specified property following the rules {@link XsdConverter} applies
+	 * to the compiled field.
+	 */
+	private void addProperty(CPropertyInfo property, ItemDef itemDef, Map<String, Set<String>> references) {
+
+		String fieldName = property.getName(false);
+
+		CTypeInfo type = getSingleType(property);
+		if (type == null) {
+			// Element references, wildcards and choices of different types are generated as JAXBElement, DOM or
+			// common super type fields, none of which results in a field or a resolvable reference
+			return;
+		}
+
+		Class<?> builtinCls = getBuiltinClass(type, property);
+		boolean isCollection = property.isCollection();
+
+		if (!isCollection && builtinCls != null && Field.FieldType.getFromJavaType(builtinCls) != null) {
+
+			// Basic Java type
+			itemDef.addField(fieldName, Field.FieldType.getFromJavaType(builtinCls));
+
+		} else if (fieldName.equalsIgnoreCase("systemid")) {
+
+			// Otherwise it would be detected as a reference
+			itemDef.addField(fieldName, Field.FieldType.getFromJavaType(String.class));
+
+		} else if (isCollection) {
+
+			if (builtinCls != null && Field.FieldType.getFromJavaType(builtinCls) != null) {
+				itemDef.addField(fieldName, Field.FieldType.getFromJavaType(String.class));
+			} else if (type instanceof CClassInfo || type instanceof CEnumLeafInfo) {
+				createReference(createItemDef(type), itemDef, references);
+			}
+
+		} else if (type instanceof CEnumLeafInfo) {
+
+			// Enum
+			itemDef.addField(fieldName, Field.FieldType.getFromJavaType(String.class));
+
+		} else if (type instanceof CClassInfo) {
+
+			// Another generated type for which a reference must be created
+			createReference(createItemDef(type), itemDef, references);
+		}
+	}
+
+	private static CTypeInfo getSingleType(CPropertyInfo property) {
+
+		if (property instanceof CReferencePropertyInfo || property.getAdapter() != null) {
+			return null;
+		}
+
+		Collection<? extends CTypeInfo> types = property.ref();
+
+		return types.size() == 1 ? types.iterator().next() : null;
+	}
+
+	/**
+	 * Retrieves the Java class of a built-in type, unboxed if XJC generates a primitive field for the property.
+	 *
+	 * @return The Java class or null if the type is not a built-in one
+	 */
+	private static Class<?> getBuiltinClass(CTypeInfo type, CPropertyInfo property) {
+
+		if (!(type instanceof CBuiltinLeafInfo)) {
+			return null;
+		}
+
+		Class<?> cls;
+		try {
+			cls = ClassUtils.getClass(type.getType().fullName());
+		} catch (ClassNotFoundException ex) {
+			return null;
+		}
+
+		if (!property.isCollection() && property.isUnboxable() && ClassUtils.wrapperToPrimitive(cls) != null) {
+			cls = ClassUtils.wrapperToPrimitive(cls);
+		}
+
+		return cls;
+	}
+
+	private static ItemDef createItemDef(CTypeInfo type) {
+
+		if (type instanceof CEnumLeafInfo) {
+
+			CEnumLeafInfo enumInfo = (CEnumLeafInfo) type;
+			return new ItemDef(enumInfo.parent.getOwnerPackage().name(), enumInfo.shortName);
+		}
+
+		CClassInfo rootClassInfo = (CClassInfo) type;
+		while (rootClassInfo.getBaseClass() != null) {
+			rootClassInfo = rootClassInfo.getBaseClass();
+		}
+
+		return new ItemDef(rootClassInfo.getOwnerPackage().name(), rootClassInfo.shortName);
+	}
+
+	private void createReference(ItemDef referenceItemDef, ItemDef srcItemDef, Map<String, Set<String>> references) {
+
+		if (!references.containsKey(referenceItemDef.getFullName())) {
+			references.put(referenceItemDef.getFullName(), new HashSet<String>());
+		}
+		references.get(referenceItemDef.getFullName()).add(srcItemDef.getFullName());
+	}
+}
@@ -82,6 +82,12 @@ public class Run {
 			System.exit(0);
 		}
 
+		Training.logClassDataSharingStatus();
+
+		if (globalConfig.train()) {
+			return Training.createCommand();
+		}
+
 		Command command = commands.get(argParser.getParsedCommand());
 		command.validate();
 
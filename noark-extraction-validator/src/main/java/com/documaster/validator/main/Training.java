@@ -0,0 +1,122 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.main;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import com.documaster.validator.config.commands.Noark55Command;
+import com.documaster.validator.reporting.ReportType;
+import com.documaster.validator.validation.noark5.model.Noark5PackageStructure;
+import com.sun.management.HotSpotDiagnosticMXBean;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Supports the training run of the validator.
+ * <p/>
+ * A training run validates a small sample extraction package bundled with the validator, producing all report types,
+ * so that a typical execution can be recorded with the JVM options that dump the list of loaded classes. The list is
+ * used to create a class data sharing archive that shortens the startup of later executions (see the launcher of the
+ * debian package).
+ */
+final class Training {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(Training.class);
+
+	private static final String SAMPLE_LOCATION = "noark5/noark55/sample";
+
+	private static final String[] SAMPLE_FILES = new String[] {
+			"arkivstruktur.xml", "arkivuttrekk.xml", "endringslogg.xml", "dokumenter/d0.pdf", "dokumenter/d1.pdf" };
+
+	private Training() {
+		// Prevent instantiation
+	}
+
+	/**
+	 * Creates a command that validates the bundled sample extraction package.
+	 * <p/>
+	 * The sample package and the reports are written to a temporary directory that is deleted on exit.
+	 */
+	static Noark55Command createCommand() throws IOException {
+
+		LOGGER.info("Training the validator with the bundled sample extraction package ...");
+
+		File trainingDirectory = Files.createTempDirectory("noark-extraction-validator-training-").toFile();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> FileUtils.deleteQuietly(trainingDirectory)));
+
+		File extractionDirectory = new File(trainingDirectory, "extraction");
+		File outputDirectory = new File(trainingDirectory, "reports");
+		FileUtils.forceMkdir(outputDirectory);
+
+		Noark55Command command = new Noark55Command();
+
+		for (String sampleFile : SAMPLE_FILES) {
+			try (InputStream is = Training.class.getClassLoader()
+					.getResourceAsStream(SAMPLE_LOCATION + "/" + sampleFile)) {
+				FileUtils.copyInputStreamToFile(is, new File(extractionDirectory, sampleFile));
+			}
+		}
+
+		// The sample package is distributed with the original Noark 5 schemas
+		new Noark5PackageStructure(extractionDirectory, extractionDirectory)
+				.extractNoarkSchemas(command.getDefaultSchemaLocation());
+
+		command.setExtractionDirectory(extractionDirectory);
+		command.setIgnoreNonCompliantXML(true);
+		command.getReportConfiguration().setOutputDir(outputDirectory);
+		command.getReportConfiguration().setOutputTypes(Arrays.asList(ReportType.values()));
+		command.validate();
+
+		return command;
+	}
+
+	/**
+	 * Logs whether the JVM maps its classes from the class data sharing archive created by a training run. The default
+	 * archive of the JDK does not count, since it does not contain the classes of the validator.
+	 */
+	static void logClassDataSharingStatus() {
+
+		String sharedArchiveFile = System.getProperty("java.vm.info", "").contains("sharing")
+				? getSharedArchiveFile() : "";
+
+		if (!sharedArchiveFile.isEmpty()) {
+			LOGGER.info("Class data sharing is enabled with the archive {}", sharedArchiveFile);
+		} else {
+			LOGGER.debug("No trained class data sharing archive is used. Run the validator with -train to create one.");
+		}
+	}
+
+	private static String getSharedArchiveFile() {
+
+		try {
+			HotSpotDiagnosticMXBean diagnosticBean = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+
+			return diagnosticBean != null ? diagnosticBean.getVMOption("SharedArchiveFile").getValue() : "";
+
+		} catch (IllegalArgumentException ex) {
+			// Not a HotSpot JVM or one without the option
+			return "";
+		}
+	}
+}
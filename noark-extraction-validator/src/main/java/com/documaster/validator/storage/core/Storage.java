@@ -17,10 +17,11 @@
  */
 package com.documaster.validator.storage.core;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.documaster.validator.config.delegates.StorageConfiguration;
 import com.documaster.validator.exceptions.StorageException;
@@ -37,9 +38,21 @@ public abstract class Storage {
 
 	private static Storage instance;
 
-	private StorageWriter writerThread;
+	private int writerCount = 1;
 
-	private LinkedBlockingQueue<Persistable> queue = new LinkedBlockingQueue<>();
+	private int writeQueueCapacity = Integer.MAX_VALUE;
+
+	private StorageWriter[] writers;
+
+	/**
+	 * Whether the writers have been stopped by {@link #stopWriter()}
+	 */
+	private boolean areWritersStopped = false;
+
+	/**
+	 * The first exception encountered by any of the writers
+	 */
+	private final AtomicReference<Exception> writerException = new AtomicReference<>();
 
 	/**
 	 * < item definition full name , set of unique field names >
@@ -65,6 +78,8 @@ public abstract class Storage {
 
 		instance = StorageFactory.createPersistence(config);
 		instance.uniqueFields = uniqueFields;
+		instance.writerCount = config.getWriters();
+		instance.writeQueueCapacity = config.getWriteQueueCapacity();
 	}
 
 	public static Storage get() {
@@ -73,65 +88,154 @@ public abstract class Storage {
 	}
 
 	/**
-	 * Starts the {@link Storage}'s writer.
+	 * Starts the {@link Storage}'s writers, each with a {@link StorageConnection} of its own.
+	 * <p/>
+	 * The {@link Persistable}s are routed to the writers by their {@link ItemDef}, so that the {@link Item}s of an
+	 * {@link ItemDef} are written by the same writer as the {@link ItemDef} itself, in the order they were queued.
 	 */
-	public void startWriter() {
+	public void startWriter() throws Exception {
 
-		writerThread = new StorageWriter();
-		writerThread.start();
-	}
+		StorageConnection[] connections = new StorageConnection[writerCount];
 
-	private boolean isWriteAvailable() {
+		try {
+			for (int i = 0; i < connections.length; i++) {
+				connections[i] = openWriterConnection();
+			}
+		} catch (Exception ex) {
+			for (StorageConnection connection : connections) {
+				if (connection != null) {
+					connection.close();
+				}
+			}
+			throw ex;
+		}
 
-		return writerThread != null && writerThread.isAlive();
+		writerException.set(null);
+		areWritersStopped = false;
+		writers = new StorageWriter[connections.length];
+
+		for (int i = 0; i < writers.length; i++) {
+			writers[i] = new StorageWriter(this, connections[i], i, writeQueueCapacity);
+			writers[i].start();
+		}
 	}
 
 	/**
-	 * Queues the specified {@link Persistable} object for writing.
+	 * Queues the specified {@link Persistable} object for writing, waiting while the queue of its writer is full.
 	 * <p/>
-	 * Writing a {@link StorageWriter#SHUTDOWN_SIGNAL} will send a shutdown signal to the writer.
+	 * Writing a {@link StorageWriter#SHUTDOWN_SIGNAL} will send a shutdown signal to all writers.
 	 */
 	public void write(Persistable obj) {
 
-		if (!isWriteAvailable()) {
+		if (obj == StorageWriter.SHUTDOWN_SIGNAL && writers != null) {
+			for (StorageWriter writer : writers) {
+				writer.write(obj);
+			}
+			return;
+		}
+
+		StorageWriter writer = writers != null ? writers[getWriterIndex(obj)] : null;
+
+		if (writer == null || writerException.get() != null || !writer.write(obj)) {
 			throw new StorageException(
 					"The Storage writer is not listening. Most probably the writer "
 							+ "thread encountered an unexpected error. Please verify the logs for more information.");
 		}
+	}
+
+	/**
+	 * Retrieves the number of objects that are waiting to be written by the {@link Storage}'s writers.
+	 */
+	public int getWriteQueueDepth() {
+
+		int depth = 0;
+
+		if (writers != null) {
+			for (StorageWriter writer : writers) {
+				depth += writer.getQueueDepth();
+			}
+		}
+
+		return depth;
+	}
+
+	/**
+	 * Retrieves the maximum number of objects that any of the {@link Storage}'s writers has found in its queue.
+	 */
+	public int getPeakWriteQueueDepth() {
+
+		int peakDepth = 0;
+
+		if (writers != null) {
+			for (StorageWriter writer : writers) {
+				peakDepth = Math.max(peakDepth, writer.getPeakQueueDepth());
+			}
+		}
 
-		queue.offer(obj);
+		return peakDepth;
 	}
 
-	Persistable nextInWriteQueue() throws InterruptedException {
+	/**
+	 * Retrieves the index of the writer of the specified {@link Persistable}, i.e. the writer of its {@link ItemDef}.
+	 */
+	private int getWriterIndex(Persistable obj) {
 
-		return queue.take();
+		ItemDef itemDef = null;
+
+		if (obj instanceof ItemDef) {
+			itemDef = (ItemDef) obj;
+		} else if (obj instanceof Item) {
+			itemDef = ((Item) obj).getItemDef();
+		}
+
+		return itemDef != null ? Math.floorMod(System.identityHashCode(itemDef), writers.length) : 0;
 	}
 
 	/**
-	 * Sends a shut down signal to the {@link Storage}'s writer, waits for it to exit, and returns its exit status.
+	 * Sends a shut down signal to the {@link Storage}'s writers, waits for all of them to flush and exit, and returns
+	 * their exit status. Once the writers have been stopped, later calls return the same status.
 	 *
-	 * @return <b>true</b> if the writer exists and no exceptions occurred during execution; <b>false</b> otherwise.
+	 * @return <b>true</b> if the writers exist and no exceptions occurred during execution; <b>false</b> otherwise.
 	 */
 	public boolean stopWriter() {
 
-		if (writerThread != null && isWriteAvailable()) {
-			// Send shut down signal to writer
-			write(StorageWriter.SHUTDOWN_SIGNAL);
+		if (writers == null) {
+			return areWritersStopped && writerException.get() == null;
+		}
 
-			// Wait for the listener to exit
+		for (StorageWriter writer : writers) {
+			// Send shut down signal to writer (if it is still running)
+			writer.write(StorageWriter.SHUTDOWN_SIGNAL);
+		}
+
+		for (StorageWriter writer : writers) {
+			// Wait for the writer to exit
 			try {
-				writerThread.join();
+				writer.join();
 			} catch (InterruptedException ex) {
 				// Ignore... someone else has interrupted the writer
 			}
 		}
 
-		return writerThread != null && writerThread.getLastException() == null;
+		LOGGER.info("Storage writers stopped; the peak write queue depth was {}", getPeakWriteQueueDepth());
+
+		writers = null;
+		areWritersStopped = true;
+
+		return writerException.get() == null;
 	}
 
+	/**
+	 * Retrieves the first exception encountered by any of the {@link Storage}'s writers.
+	 */
 	public Exception getLastWriterException() {
 
-		return writerThread.getLastException();
+		return writerException.get();
+	}
+
+	void writerFailed(Exception ex) {
+
+		writerException.compareAndSet(null, ex);
 	}
 
 	/**
@@ -150,9 +254,24 @@ public abstract class Storage {
 	 */
 	public abstract void destroy();
 
-	protected abstract void writeItemDef(ItemDef itemDef) throws Exception;
+	/**
+	 * Opens a {@link StorageConnection} for a writer of the {@link Storage}.
+	 */
+	protected abstract StorageConnection openWriterConnection() throws Exception;
+
+	/**
+	 * Creates the (empty) structures of the written {@link ItemDef}s that are referenced by the specified queries but
+	 * have not been created yet, so that the queries can be executed even if no data was written for them.
+	 * <p/>
+	 * Must not be invoked while the {@link Storage}'s writer is running.
+	 */
+	public abstract void createReferencedItemDefs(Collection<String> queries) throws Exception;
 
-	protected abstract void writeItem(Item item) throws Exception;
+	/**
+	 * Checks whether the structure of the {@link ItemDef} with the specified full name has been created, i.e. whether
+	 * it can be queried.
+	 */
+	public abstract boolean hasItemDefStructure(String itemDefFullName);
 
 	/**
 	 * Fetches the results of the specified query mapped as a list of {@link BaseItem}s.
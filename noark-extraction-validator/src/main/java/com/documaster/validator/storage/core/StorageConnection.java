@@ -0,0 +1,44 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.storage.core;
+
+import com.documaster.validator.storage.model.Item;
+import com.documaster.validator.storage.model.ItemDef;
+
+/**
+ * A connection through which a {@link StorageWriter} writes the {@link ItemDef}s and {@link Item}s routed to it.
+ * <p/>
+ * Every writer has a connection of its own, which is only used by the writer's thread.
+ */
+public interface StorageConnection {
+
+	void writeItemDef(ItemDef itemDef) throws Exception;
+
+	void writeItem(Item item) throws Exception;
+
+	/**
+	 * Completes the writing of the {@link Item}s that have been written so far, e.g. commits them if they are written
+	 * in batches. Invoked by the writer before it exits.
+	 */
+	void flush() throws Exception;
+
+	/**
+	 * Closes the connection, discarding anything that has not been flushed.
+	 */
+	void close();
+}
@@ -45,6 +45,8 @@ public final class StorageFactory {
 				persistence.setUsername("SA");
 				persistence.setPassword("");
 				persistence.setRole("dba");
+				persistence.setBatchSize(config.getBatchSize());
+				persistence.setCommitInterval(config.getCommitInterval());
 
 				return persistence;
 
@@ -60,6 +62,8 @@ public final class StorageFactory {
 				filePersistence.setUsername("SA");
 				filePersistence.setPassword("");
 				filePersistence.setRole("dba");
+				filePersistence.setBatchSize(config.getBatchSize());
+				filePersistence.setCommitInterval(config.getCommitInterval());
 
 				return filePersistence;
 
@@ -75,6 +79,8 @@ public final class StorageFactory {
 				serverPersistence.setUsername("SA");
 				serverPersistence.setPassword("");
 				serverPersistence.setRole("dba");
+				serverPersistence.setBatchSize(config.getBatchSize());
+				serverPersistence.setCommitInterval(config.getCommitInterval());
 
 				return serverPersistence;
 
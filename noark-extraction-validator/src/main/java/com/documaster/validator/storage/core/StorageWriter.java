@@ -17,6 +17,12 @@
  */
 package com.documaster.validator.storage.core;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
 import com.documaster.validator.exceptions.StorageException;
 import com.documaster.validator.storage.model.Item;
 import com.documaster.validator.storage.model.ItemDef;
@@ -25,6 +31,12 @@ import com.documaster.validator.storage.model.ShutdownSignal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * A thread that writes the {@link Persistable}s of its queue through a {@link StorageConnection} of its own.
+ * <p/>
+ * The queue is a bounded ring buffer: the threads that queue objects wait while it is full, and the writer takes all
+ * the queued objects at once rather than one at a time.
+ */
 final class StorageWriter extends Thread {
 
 	static final Persistable SHUTDOWN_SIGNAL = new ShutdownSignal() {
@@ -32,53 +44,128 @@ final class StorageWriter extends Thread {
 	};
 	private static final Logger LOGGER = LoggerFactory.getLogger(StorageWriter.class);
 
-	private Exception lastException;
+	/**
+	 * The interval at which a thread waiting for space in the queue checks whether the writer is still running
+	 */
+	private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+	private final Storage storage;
+
+	private final StorageConnection connection;
+
+	private final BlockingQueue<Persistable> queue;
+
+	/**
+	 * The maximum number of objects the writer has found in its queue
+	 */
+	private volatile int peakQueueDepth = 0;
+
+	StorageWriter(Storage storage, StorageConnection connection, int index, int queueCapacity) {
+
+		super("storage-writer-" + index);
+		this.storage = storage;
+		this.connection = connection;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+	}
+
+	/**
+	 * Queues the specified {@link Persistable} object for writing, waiting for space in the queue if it is full.
+	 *
+	 * @return <b>true</b> if the object was queued; <b>false</b> if the writer has exited
+	 */
+	boolean write(Persistable obj) {
+
+		try {
+			while (!queue.offer(obj, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+				if (!isAlive()) {
+					return false;
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new StorageException("Interrupted while waiting for " + getName(), ex);
+		}
+
+		return true;
+	}
 
-	Exception getLastException() {
+	/**
+	 * Retrieves the number of objects that are waiting to be written.
+	 */
+	int getQueueDepth() {
 
-		return lastException;
+		return queue.size();
+	}
+
+	int getPeakQueueDepth() {
+
+		return peakQueueDepth;
 	}
 
 	@Override
 	public void run() {
 
-		LOGGER.info("Running Storage writer thread ...");
+		LOGGER.info("Running Storage writer thread {} ...", getName());
 
-		lastException = null;
 		boolean shutdown = false;
 
-		while (!shutdown) {
+		List<Persistable> persistableObjects = new ArrayList<>();
 
-			try {
+		try {
+			while (!shutdown) {
 
-				Persistable persistableObject = Storage.get().nextInWriteQueue();
+				try {
 
-				if (persistableObject instanceof ShutdownSignal) {
-					shutdown = true;
-					continue;
-				}
+					// Sampled before taking, since a drained batch can exceed the capacity of the queue
+					int queueDepth = queue.size();
+					if (queueDepth > peakQueueDepth) {
+						peakQueueDepth = queueDepth;
+					}
 
-				if (ItemDef.class.isAssignableFrom(persistableObject.getClass())) {
-					Storage.get().writeItemDef((ItemDef) persistableObject);
-				} else if (Item.class.isAssignableFrom(persistableObject.getClass())) {
-					Storage.get().writeItem((Item) persistableObject);
-				} else {
-					throw new StorageException("Unknown storage type: " + persistableObject);
-				}
-			} catch (Exception ex) {
+					persistableObjects.add(queue.take());
+					queue.drainTo(persistableObjects);
+
+					for (Persistable persistableObject : persistableObjects) {
+
+						if (persistableObject instanceof ShutdownSignal) {
+							connection.flush();
+							shutdown = true;
+							break;
+						}
+
+						if (ItemDef.class.isAssignableFrom(persistableObject.getClass())) {
+							connection.writeItemDef((ItemDef) persistableObject);
+						} else if (Item.class.isAssignableFrom(persistableObject.getClass())) {
+							connection.writeItem((Item) persistableObject);
+						} else {
+							throw new StorageException("Unknown storage type: " + persistableObject);
+						}
+					}
 
-				Thread.currentThread().interrupt();
-				shutdown = true;
+					persistableObjects.clear();
+
+				} catch (Exception ex) {
+
+					Thread.currentThread().interrupt();
+					shutdown = true;
 
-				if (ex instanceof InterruptedException) {
-					LOGGER.debug("Storage writer was interrupted.");
-				} else {
-					lastException = ex;
-					throw new StorageException("Storage writer encountered an unexpected error", ex);
+					if (ex instanceof InterruptedException) {
+						LOGGER.debug("Storage writer was interrupted.");
+					} else {
+						storage.writerFailed(ex);
+						throw new StorageException("Storage writer encountered an unexpected error", ex);
+					}
+				} catch (Error err) {
+
+					// Errors such as OutOfMemoryError are not recoverable either, but are reported to stopWriter()
+					storage.writerFailed(new StorageException("Storage writer encountered an unexpected error", err));
+					throw err;
 				}
 			}
+		} finally {
+			connection.close();
 		}
 
-		LOGGER.info("Storage writer finished successfully.");
+		LOGGER.info("Storage writer {} finished successfully.", getName());
 	}
 }
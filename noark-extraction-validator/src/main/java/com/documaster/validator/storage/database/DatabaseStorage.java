@@ -27,13 +27,20 @@ import java.text.MessageFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import com.documaster.validator.storage.core.Storage;
+import com.documaster.validator.storage.core.StorageConnection;
 import com.documaster.validator.storage.model.BaseItem;
 import com.documaster.validator.storage.model.Field;
 import com.documaster.validator.storage.model.Item;
@@ -50,6 +57,9 @@ public class DatabaseStorage extends Storage {
 	private static final String[] INCOMING_DATE_PATTERNS = new String[] {
 			"yyyy-MM-dd'T'HH:mm:ss.SSS", "yyyy-MM-dd'T'HH:mm:ss", "yyyy-MM-dd" };
 
+	// Matches qualified (schema.table) names in a query
+	private static final Pattern QUALIFIED_NAME_PATTERN = Pattern.compile("\\b[A-Za-z_]\\w*\\.[A-Za-z_]\\w*\\b");
+
 	private String driver;
 
 	private String connectionString;
@@ -62,14 +72,27 @@ public class DatabaseStorage extends Storage {
 
 	private Connection conn;
 
-	private List<String> existingSchemas;
+	private int batchSize = 1;
 
-	private List<String> existingTables;
+	private long commitInterval = 0;
+
+	/**
+	 * < item definition full name , item definition > of the written item definitions
+	 */
+	private Map<String, ItemDef> itemDefs;
+
+	/**
+	 * The schemas and tables that have been created by any of the connections; guarded by this storage
+	 */
+	private Set<String> existingSchemas;
+
+	private Set<String> existingTables;
 
 	public DatabaseStorage() {
 
-		existingSchemas = new ArrayList<>();
-		existingTables = new ArrayList<>();
+		itemDefs = new ConcurrentHashMap<>();
+		existingSchemas = new HashSet<>();
+		existingTables = new HashSet<>();
 	}
 
 	public void setDriver(String driver) {
@@ -97,75 +120,102 @@ public class DatabaseStorage extends Storage {
 		this.role = role;
 	}
 
+	/**
+	 * Sets the maximum number of rows that are written in a single transaction.
+	 */
+	public void setBatchSize(int batchSize) {
+
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Sets the number of milliseconds after which the written rows are committed even if there are fewer than the
+	 * batch size of them.
+	 */
+	public void setCommitInterval(long commitInterval) {
+
+		this.commitInterval = commitInterval;
+	}
+
 	@Override
 	public void connect() throws SQLException, ClassNotFoundException {
 
 		LOGGER.debug("Initializing connection to " + connectionString);
 		Class.forName(driver);
-		conn = DriverManager.getConnection(connectionString, username, password);
-		conn.setAutoCommit(false);
+		conn = openConnection();
+
+		createFunctions();
 	}
 
-	@Override
-	public boolean isReadAvailable() {
+	private Connection openConnection() throws SQLException {
 
-		return conn != null;
+		Connection connection = DriverManager.getConnection(connectionString, username, password);
+		connection.setAutoCommit(false);
+
+		return connection;
 	}
 
+	/**
+	 * Opens a {@link DatabaseConnection} of its own for a writer.
+	 */
 	@Override
-	public void writeItemDef(ItemDef itemDef) throws SQLException {
+	protected StorageConnection openWriterConnection() throws SQLException {
 
-		if (!existingSchemas.contains(itemDef.getGroupName())) {
-			createSchema(itemDef.getGroupName());
-		}
-
-		if (!existingTables.contains(itemDef.getFullName())) {
-			createTable(itemDef);
-			createIndices(itemDef);
-		}
+		return new DatabaseConnection(openConnection());
 	}
 
-	@Override
-	public void writeItem(Item item) throws SQLException {
+	/**
+	 * Creates the SQL functions of {@link XMLFunctions}, replacing those of a previous execution.
+	 * <p/>
+	 * The validation does not depend on the functions unless its queries call them, so it proceeds if they cannot be
+	 * created.
+	 */
+	private void createFunctions() {
 
-		// Get the item's fields
-		Set<String> fieldNames = new HashSet<>(item.getValues().keySet());
+		try (Statement statement = conn.createStatement()) {
 
-		// Retain only the ones found in its item definition... ignore the rest
-		fieldNames.retainAll(item.getItemDef().getFields().keySet());
+			for (String name : XMLFunctions.NAMES) {
+				statement.execute(MessageFormat.format("DROP FUNCTION {0} IF EXISTS;", name));
+			}
+			for (String definition : XMLFunctions.DEFINITIONS) {
+				statement.execute(definition);
+			}
 
-		String fields = StringUtils.join(fieldNames, ", ");
-		String parameters = StringUtils.join(Collections.nCopies(fieldNames.size(), "?"), ", ");
+			conn.commit();
 
-		String insertStmt = MessageFormat
-				.format("INSERT INTO {0} ( {1} ) VALUES ( {2} );", item.getItemDef().getFullName(), fields, parameters);
+		} catch (SQLException ex) {
+			LOGGER.warn("Could not create the XML functions in " + connectionString, ex);
+		}
+	}
 
-		try (PreparedStatement statement = conn.prepareStatement(insertStmt)) {
+	@Override
+	public boolean isReadAvailable() {
 
-			int i = 0;
-			for (String field : fieldNames) {
+		return conn != null;
+	}
 
-				Object value = item.getValues().get(field);
+	@Override
+	public void createReferencedItemDefs(Collection<String> queries) throws SQLException {
 
-				boolean isDate = item.getItemDef().getFields().get(field).getFieldType().isDateType();
+		for (String query : queries) {
 
-				// Make sure all dates are properly formatted as such...
-				if (value != null && isDate) {
-					try {
-						SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-						Date date = DateUtils.parseDate(value.toString(), INCOMING_DATE_PATTERNS);
-						value = sdf.format(date);
-					} catch (ParseException e) {
-						// Ignore unknown patterns
-					}
-				}
-				statement.setObject(++i, value);
+			if (StringUtils.isBlank(query)) {
+				continue;
+			}
+
+			Matcher matcher = QUALIFIED_NAME_PATTERN.matcher(query);
+			while (matcher.find()) {
+				createItemDefStructure(conn, matcher.group().toLowerCase());
 			}
-			statement.executeUpdate();
-			conn.commit();
 		}
 	}
 
+	@Override
+	public synchronized boolean hasItemDefStructure(String itemDefFullName) {
+
+		return existingTables.contains(itemDefFullName.toLowerCase());
+	}
+
 	@Override
 	public void destroy() {
 
@@ -211,7 +261,29 @@ public class DatabaseStorage extends Storage {
 		return entries;
 	}
 
-	private void createSchema(String schemaName) throws SQLException {
+	/**
+	 * Creates the schema, table and indices of the written {@link ItemDef} with the specified full name, unless they
+	 * already exist or no such {@link ItemDef} was written.
+	 * <p/>
+	 * The structures are created through the specified connection, one {@link ItemDef} at a time.
+	 */
+	private synchronized void createItemDefStructure(Connection conn, String itemDefFullName) throws SQLException {
+
+		if (existingTables.contains(itemDefFullName) || !itemDefs.containsKey(itemDefFullName)) {
+			return;
+		}
+
+		ItemDef itemDef = itemDefs.get(itemDefFullName);
+
+		if (!existingSchemas.contains(itemDef.getGroupName())) {
+			createSchema(conn, itemDef.getGroupName());
+		}
+
+		createTable(conn, itemDef);
+		createIndices(conn, itemDef);
+	}
+
+	private void createSchema(Connection conn, String schemaName) throws SQLException {
 
 		String createStmt = MessageFormat.format("CREATE SCHEMA {0} AUTHORIZATION {1};", schemaName, role);
 
@@ -225,7 +297,7 @@ public class DatabaseStorage extends Storage {
 		existingSchemas.add(schemaName);
 	}
 
-	private void createTable(ItemDef object) throws SQLException {
+	private void createTable(Connection conn, ItemDef object) throws SQLException {
 
 		String createStmt = MessageFormat.format("CREATE TABLE {0} ", object.getFullName());
 
@@ -249,7 +321,7 @@ public class DatabaseStorage extends Storage {
 		existingTables.add(object.getFullName());
 	}
 
-	private void createIndices(ItemDef itemDef) throws SQLException {
+	private void createIndices(Connection conn, ItemDef itemDef) throws SQLException {
 
 		int indexCount = 0;
 
@@ -271,4 +343,160 @@ public class DatabaseStorage extends Storage {
 			}
 		}
 	}
+
+	/**
+	 * The connection of a writer, which writes the {@link Item}s routed to the writer in batches.
+	 */
+	private final class DatabaseConnection implements StorageConnection {
+
+		private final Connection connection;
+
+		/**
+		 * < item definition , insert statement > of the item definitions that items have been written for
+		 */
+		private final Map<ItemDef, InsertStatement> insertStatements = new IdentityHashMap<>();
+
+		private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+		private int batchedRowCount = 0;
+
+		private long lastCommitTime = System.currentTimeMillis();
+
+		private DatabaseConnection(Connection connection) {
+
+			this.connection = connection;
+		}
+
+		/**
+		 * Registers the specified {@link ItemDef}.
+		 * <p/>
+		 * Its schema, table and indices are only created once the first {@link Item} of the definition is written or
+		 * a query refers to it (see {@link #createReferencedItemDefs(Collection)}), as most definitions never receive
+		 * any data.
+		 */
+		@Override
+		public void writeItemDef(ItemDef itemDef) {
+
+			itemDefs.put(itemDef.getFullName(), itemDef);
+		}
+
+		/**
+		 * Adds the specified {@link Item} to the batch of the rows of its table.
+		 * <p/>
+		 * The batches are executed and committed once they contain the configured number of rows or once the
+		 * configured interval since the last commit has elapsed, whichever comes first (see {@link #flush()}).
+		 */
+		@Override
+		public void writeItem(Item item) throws SQLException {
+
+			InsertStatement insertStatement = insertStatements.get(item.getItemDef());
+
+			if (insertStatement == null) {
+				createItemDefStructure(connection, item.getItemDef().getFullName());
+
+				insertStatement = new InsertStatement(connection, item.getItemDef());
+				insertStatements.put(item.getItemDef(), insertStatement);
+			}
+
+			Map<String, Object> values = item.getValues();
+
+			// Fields that are not found in the item definition are ignored; the missing ones are null
+			for (int i = 0; i < insertStatement.fieldNames.length; i++) {
+
+				Object value = values.get(insertStatement.fieldNames[i]);
+
+				// Make sure all dates are properly formatted as such...
+				if (value != null && insertStatement.isDateField[i]) {
+					try {
+						Date date = DateUtils.parseDate(value.toString(), INCOMING_DATE_PATTERNS);
+						value = dateFormat.format(date);
+					} catch (ParseException e) {
+						// Ignore unknown patterns
+					}
+				}
+				insertStatement.statement.setObject(i + 1, value);
+			}
+
+			insertStatement.statement.addBatch();
+			insertStatement.hasBatch = true;
+
+			if (++batchedRowCount >= batchSize || System.currentTimeMillis() - lastCommitTime >= commitInterval) {
+				flush();
+			}
+		}
+
+		/**
+		 * Executes the batches of the written rows and commits them.
+		 */
+		@Override
+		public void flush() throws SQLException {
+
+			for (InsertStatement insertStatement : insertStatements.values()) {
+				if (insertStatement.hasBatch) {
+					insertStatement.statement.executeBatch();
+					insertStatement.hasBatch = false;
+				}
+			}
+
+			connection.commit();
+
+			batchedRowCount = 0;
+			lastCommitTime = System.currentTimeMillis();
+		}
+
+		@Override
+		public void close() {
+
+			for (InsertStatement insertStatement : insertStatements.values()) {
+				try {
+					insertStatement.statement.close();
+				} catch (SQLException ex) {
+					LOGGER.warn("Could not close statement", ex);
+				}
+			}
+
+			insertStatements.clear();
+
+			try {
+				connection.close();
+			} catch (SQLException ex) {
+				LOGGER.warn("Could not close writer connection to " + connectionString);
+			}
+		}
+	}
+
+	/**
+	 * The prepared INSERT statement of an {@link ItemDef}, which covers all of its fields in a fixed order and is
+	 * reused for all of its {@link Item}s.
+	 */
+	private static final class InsertStatement {
+
+		private final PreparedStatement statement;
+
+		private final String[] fieldNames;
+
+		private final boolean[] isDateField;
+
+		private boolean hasBatch = false;
+
+		private InsertStatement(Connection conn, ItemDef itemDef) throws SQLException {
+
+			Map<String, Field> fields = itemDef.getFields();
+
+			fieldNames = new String[fields.size()];
+			isDateField = new boolean[fields.size()];
+
+			int i = 0;
+			for (Map.Entry<String, Field> field : fields.entrySet()) {
+				fieldNames[i] = field.getKey().intern();
+				isDateField[i] = field.getValue().getFieldType().isDateType();
+				i++;
+			}
+
+			statement = conn.prepareStatement(MessageFormat.format(
+					"INSERT INTO {0} ( {1} ) VALUES ( {2} );", itemDef.getFullName(),
+					StringUtils.join(fieldNames, ", "),
+					StringUtils.join(Collections.nCopies(fieldNames.length, "?"), ", ")));
+		}
+	}
 }
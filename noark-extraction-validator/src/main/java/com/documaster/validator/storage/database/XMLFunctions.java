@@ -0,0 +1,107 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.storage.database;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.InflaterInputStream;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import com.documaster.validator.storage.model.Field;
+import org.apache.commons.io.IOUtils;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+/**
+ * SQL functions on the compressed XML documents that are stored in the database, e.g. the business-specific metadata
+ * in {@link Field#BUSINESS_SPECIFIC_METADATA}. The documents are only decompressed and parsed when a query calls one
+ * of the functions.
+ * <p/>
+ * The functions are available in the validation queries as:
+ * <ul>
+ * <li>xml_document(document): the document as text</li>
+ * <li>xml_xpath(document, expression): the string value of an XPath 1.0 expression evaluated on the document</li>
+ * </ul>
+ * The documents are parsed without namespace awareness, so elements with a prefix are matched by their qualified
+ * name, e.g. //*[name()='vsm:felt'].
+ */
+public final class XMLFunctions {
+
+	static final String[] DEFINITIONS = {
+			"CREATE FUNCTION xml_document(document VARBINARY(16M)) RETURNS VARCHAR(16M) LANGUAGE JAVA "
+					+ "DETERMINISTIC NO SQL RETURNS NULL ON NULL INPUT EXTERNAL NAME 'CLASSPATH:"
+					+ XMLFunctions.class.getName() + ".getDocument'",
+			"CREATE FUNCTION xml_xpath(document VARBINARY(16M), expression VARCHAR(32K)) RETURNS VARCHAR(16M) "
+					+ "LANGUAGE JAVA DETERMINISTIC NO SQL RETURNS NULL ON NULL INPUT EXTERNAL NAME 'CLASSPATH:"
+					+ XMLFunctions.class.getName() + ".evaluateXPath'" };
+
+	static final String[] NAMES = { "xml_document", "xml_xpath" };
+
+	private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = ThreadLocal.withInitial(() -> {
+		try {
+			return DocumentBuilderFactory.newInstance().newDocumentBuilder();
+		} catch (ParserConfigurationException ex) {
+			throw new IllegalStateException("Could not create a document builder", ex);
+		}
+	});
+
+	private static final ThreadLocal<XPath> XPATH = ThreadLocal.withInitial(() -> XPathFactory.newInstance()
+			.newXPath());
+
+	private XMLFunctions() {
+		// Prevent instantiation
+	}
+
+	/**
+	 * Decompresses the specified document.
+	 */
+	public static String getDocument(byte[] document) throws IOException {
+
+		try (InputStream is = decompress(document)) {
+			return IOUtils.toString(is, StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Evaluates the specified XPath expression on the specified document.
+	 *
+	 * @return The string value of the result, i.e. an empty string if the expression selects no node
+	 */
+	public static String evaluateXPath(byte[] document, String expression)
+			throws IOException, SAXException, XPathExpressionException {
+
+		Document dom;
+		try (InputStream is = decompress(document)) {
+			dom = DOCUMENT_BUILDER.get().parse(is);
+		}
+
+		return XPATH.get().evaluate(expression, dom);
+	}
+
+	private static InputStream decompress(byte[] document) {
+
+		return new InflaterInputStream(new ByteArrayInputStream(document));
+	}
+}
@@ -17,13 +17,16 @@
  */
 package com.documaster.validator.storage.model;
 
+import java.io.Serializable;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * A basic wrapper around a {@link Map}.
  */
-public class BaseItem {
+public class BaseItem implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private Map<String, Object> values;
 
@@ -37,7 +40,15 @@ public class BaseItem {
 
 	public BaseItem add(String name, Object value) {
 
-		getValues().put(name.toLowerCase(), value);
+		return addNormalized(name.toLowerCase(), value);
+	}
+
+	/**
+	 * Adds a value with a name that is already lowercase, e.g. the name of a {@link Field} of an {@link ItemDef}.
+	 */
+	public BaseItem addNormalized(String name, Object value) {
+
+		getValues().put(name, value);
 		return this;
 	}
 
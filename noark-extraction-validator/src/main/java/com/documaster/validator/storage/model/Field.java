@@ -17,6 +17,7 @@
  */
 package com.documaster.validator.storage.model;
 
+import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.sql.Time;
@@ -28,16 +29,31 @@ import java.util.HashMap;
 import java.util.Map;
 import javax.xml.datatype.XMLGregorianCalendar;
 
-public class Field {
+public class Field implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	public static final String INTERNAL_ID = "_id";
 	public static final String DETECTED_CHECKSUM = "_detected_checksum";
 	public static final String DETECTED_FILE_TYPE = "_detected_type";
 	public static final String IS_VALID_FILE_TYPE = "_is_valid_type";
 
+	/**
+	 * The business-specific metadata (virksomhetsspesifikkeMetadata) of an item as a deflated (zlib) UTF-8 XML
+	 * document
+	 */
+	public static final String BUSINESS_SPECIFIC_METADATA = "_business_metadata";
+
+	/**
+	 * The maximum length in bytes of a {@link FieldType#BYTE_PRIMITIVE_ARRAY} value
+	 */
+	public static final int MAX_BINARY_LENGTH = 16 * 1024 * 1024;
+
 	static final String REFERENCE_PREFIX = "_ref_";
 	static final String TYPE = "_dtype";
 	static final String INTERNAL_PARENT_ID = "_parent_id";
+	static final String INTERNAL_START_OFFSET = "_start_offset";
+	static final String INTERNAL_END_OFFSET = "_end_offset";
 
 	private String name;
 
@@ -117,7 +133,7 @@ public class Field {
 
 		CALENDAR(Calendar.class, "TIMESTAMP"),
 
-		BYTE_PRIMITIVE_ARRAY(byte[].class, "VARBINARY"),
+		BYTE_PRIMITIVE_ARRAY(byte[].class, "VARBINARY(16M)"),
 
 		STRING(String.class, "TEXT"),
 
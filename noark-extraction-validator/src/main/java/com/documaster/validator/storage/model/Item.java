@@ -29,6 +29,8 @@ import org.apache.commons.lang.Validate;
  */
 public class Item extends BaseItem implements Persistable {
 
+	private static final long serialVersionUID = 1L;
+
 	private ItemDef itemDef;
 
 	/**
@@ -45,6 +47,25 @@ public class Item extends BaseItem implements Persistable {
 		setId();
 	}
 
+	/**
+	 * Creates a new {@link Item} with the specified {@link ItemDef} definition and ID.
+	 * <p/>
+	 * The ID is not taken from the {@link ItemDef} definition. It is up to the caller to make it unique, e.g. by
+	 * reassigning it with {@link #setId(Integer)} once IDs have been reserved through {@link ItemDef#reserveIds(int)}.
+	 *
+	 * @param itemDef
+	 * 		The {@link ItemDef} this {@link Item} belongs to.
+	 * @param id
+	 * 		The ID of the {@link Item}
+	 */
+	public Item(ItemDef itemDef, Integer id) {
+
+		Validate.notNull("The associated item definition cannot be null");
+
+		this.itemDef = itemDef;
+		setId(id);
+	}
+
 	public ItemDef getItemDef() {
 
 		return itemDef;
@@ -57,20 +78,46 @@ public class Item extends BaseItem implements Persistable {
 
 	private void setId() {
 
-		add(Field.INTERNAL_ID, itemDef.getNextId());
+		setId(itemDef.getNextId());
+	}
+
+	public void setId(Integer id) {
+
+		addNormalized(Field.INTERNAL_ID, id);
 	}
 
 	public void setParentId(Integer parentId) {
 
 		if (parentId != null) {
-			add(Field.INTERNAL_PARENT_ID, parentId);
+			addNormalized(Field.INTERNAL_PARENT_ID, parentId);
+		}
+	}
+
+	/**
+	 * Sets the byte offset of the first byte of the element the {@link Item} was read from in its file.
+	 */
+	public void setStartOffset(Long startOffset) {
+
+		if (startOffset != null) {
+			addNormalized(Field.INTERNAL_START_OFFSET, startOffset);
+		}
+	}
+
+	/**
+	 * Sets the byte offset of the byte following the last byte of the element the {@link Item} was read from in its
+	 * file.
+	 */
+	public void setEndOffset(Long endOffset) {
+
+		if (endOffset != null) {
+			addNormalized(Field.INTERNAL_END_OFFSET, endOffset);
 		}
 	}
 
 	public void setType(String type) {
 
 		if (!StringUtils.isBlank(type)) {
-			add(Field.TYPE, type);
+			addNormalized(Field.TYPE, type);
 		}
 	}
 
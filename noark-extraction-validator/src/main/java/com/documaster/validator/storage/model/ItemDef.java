@@ -17,8 +17,10 @@
  */
 package com.documaster.validator.storage.model;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.documaster.validator.exceptions.ConversionException;
 import org.apache.commons.lang.Validate;
@@ -29,15 +31,19 @@ import org.apache.commons.lang.Validate;
  * In the case of {@link com.documaster.validator.storage.database.DatabaseStorage} {@link ItemDef} corresponds to a
  * table definition.
  */
-public class ItemDef implements Persistable {
+public class ItemDef implements Persistable, Serializable {
 
-	private Class<?> baseClass;
+	private static final long serialVersionUID = 1L;
+
+	// Generated classes are not available when the definition is loaded from a precompiled catalog
+	private transient Class<?> baseClass;
 
 	private String groupName;
 
 	private String name;
 
-	private Integer recordCount = 0;
+	// Items of the same definition may be created by concurrent parsers
+	private final AtomicInteger recordCount = new AtomicInteger();
 
 	private Map<String, Field> fields;
 
@@ -52,6 +58,26 @@ public class ItemDef implements Persistable {
 		createInternalFields();
 	}
 
+	/**
+	 * Creates an item definition for a root class that is only known by name, i.e. one that was never compiled.
+	 * <p/>
+	 * The group name and name are generated by the same rules that apply to {@link ItemDef#ItemDef(Class)}.
+	 *
+	 * @param packageName
+	 * 		The package of the root class
+	 * @param simpleClassName
+	 * 		The simple name of the root class
+	 */
+	public ItemDef(String packageName, String simpleClassName) {
+
+		Validate.notEmpty(simpleClassName, "The item definition's class name cannot be empty");
+
+		this.groupName = generateGroupName(packageName, simpleClassName);
+		this.name = generateName(simpleClassName);
+
+		createInternalFields();
+	}
+
 	public Class<?> getBaseClass() {
 
 		return baseClass;
@@ -124,7 +150,17 @@ public class ItemDef implements Persistable {
 
 	Integer getNextId() {
 
-		return ++recordCount;
+		return recordCount.incrementAndGet();
+	}
+
+	/**
+	 * Reserves a range of consecutive IDs, as if {@link #getNextId()} was invoked the specified number of times.
+	 *
+	 * @return The first ID of the reserved range
+	 */
+	public Integer reserveIds(int count) {
+
+		return recordCount.getAndAdd(count) + 1;
 	}
 
 	private void createInternalFields() {
@@ -135,25 +171,41 @@ public class ItemDef implements Persistable {
 		getFields().put(
 				Field.INTERNAL_PARENT_ID,
 				new Field(Field.INTERNAL_PARENT_ID, Field.FieldType.getFromJavaType(Integer.class)));
+		getFields().put(
+				Field.INTERNAL_START_OFFSET,
+				new Field(Field.INTERNAL_START_OFFSET, Field.FieldType.getFromJavaType(Long.class)));
+		getFields().put(
+				Field.INTERNAL_END_OFFSET,
+				new Field(Field.INTERNAL_END_OFFSET, Field.FieldType.getFromJavaType(Long.class)));
 	}
 
 	private static String generateGroupName(Class<?> cls) {
 
 		Class<?> rootCls = getRootClassOf(cls);
 
-		int lastOccurrenceOfDot = rootCls.getPackage().getName().lastIndexOf(".");
+		return generateGroupName(rootCls.getPackage().getName(), rootCls.getSimpleName());
+	}
+
+	private static String generateGroupName(String packageName, String simpleClassName) {
+
+		int lastOccurrenceOfDot = packageName != null ? packageName.lastIndexOf(".") : -1;
 
 		if (lastOccurrenceOfDot == -1) {
 			throw new ConversionException("Cannot build a group name for a class without a package: "
-					+ rootCls.getSimpleName());
+					+ simpleClassName);
 		}
 
-		return rootCls.getPackage().getName().substring(lastOccurrenceOfDot + 1).toLowerCase().replace(" -.", "_");
+		return packageName.substring(lastOccurrenceOfDot + 1).toLowerCase().replace(" -.", "_");
 	}
 
 	private static String generateName(Class<?> cls) {
 
-		return getRootClassOf(cls).getSimpleName().toLowerCase().replaceAll("[\\s\\-\\.]", "_");
+		return generateName(getRootClassOf(cls).getSimpleName());
+	}
+
+	private static String generateName(String simpleClassName) {
+
+		return simpleClassName.toLowerCase().replaceAll("[\\s\\-\\.]", "_");
 	}
 
 	/**
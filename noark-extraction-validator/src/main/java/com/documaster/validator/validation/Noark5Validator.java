@@ -17,22 +17,31 @@
  */
 package com.documaster.validator.validation;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Unmarshaller;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 
 import com.documaster.validator.config.commands.Noark5Command;
-import com.documaster.validator.converters.xsd.XsdConverter;
+import com.documaster.validator.converters.Converter;
+import com.documaster.validator.converters.ConverterType;
+import com.documaster.validator.converters.catalog.ItemDefCatalog;
+import com.documaster.validator.converters.catalog.ItemDefCatalogCache;
+import com.documaster.validator.converters.catalog.ItemDefCatalogGenerator;
 import com.documaster.validator.exceptions.ValidationException;
 import com.documaster.validator.reporting.ReportFactory;
 import com.documaster.validator.storage.core.Storage;
@@ -46,28 +55,54 @@ import com.documaster.validator.validation.noark5.model.Noark5PackageEntity;
 import com.documaster.validator.validation.noark5.model.Noark5PackageStructure;
 import com.documaster.validator.validation.noark5.parsers.BaseHandler;
 import com.documaster.validator.validation.noark5.parsers.HandlerFactory;
+import com.documaster.validator.validation.noark5.parsers.ParseStatistics;
 import com.documaster.validator.validation.noark5.provider.ValidationGroup;
 import com.documaster.validator.validation.noark5.provider.ValidationProvider;
 import com.documaster.validator.validation.noark5.provider.data.Data;
 import com.documaster.validator.validation.noark5.provider.data.ValidationData;
 import com.documaster.validator.validation.noark5.provider.rules.Check;
 import com.documaster.validator.validation.noark5.provider.rules.Test;
+import com.documaster.validator.validation.noark5.source.PackageSource;
+import com.documaster.validator.validation.noark5.validators.XMLValidation;
 import com.documaster.validator.validation.noark5.validators.XMLValidator;
 import com.documaster.validator.validation.noark5.validators.XSDValidator;
 import com.documaster.validator.validation.utils.ChecksumCalculator;
 import com.documaster.validator.validation.utils.DefaultXMLHandler;
+import com.documaster.validator.validation.utils.XMLInput;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xml.sax.InputSource;
 import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
 
 public abstract class Noark5Validator<T extends Noark5Command> extends Validator<T> {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(Noark5Validator.class);
 
-	private final XsdConverter converter = new XsdConverter();
+	/**
+	 * The element whose content is stored compressed in {@link Field#BUSINESS_SPECIFIC_METADATA}
+	 */
+	private static final String BUSINESS_SPECIFIC_METADATA = "virksomhetsspesifikkeMetadata";
+
+	/**
+	 * The name of the machine-readable package profile file in the report output directory
+	 */
+	private static final String PACKAGE_PROFILE_FILE_NAME = "package-profile.csv";
+
+	private static final String ARCHIVE_TITLE_ITEM_DEF = "addml.additionalelement";
+	private static final String ARCHIVE_TITLE_QUERY =
+			"SELECT value FROM " + ARCHIVE_TITLE_ITEM_DEF + " WHERE name = 'archive';";
+
+	private ItemDefCatalog catalog;
+
+	private PackageSource packageSource;
+
+	/**
+	 * The checksums of the XML files that were calculated while the files were parsed
+	 */
+	private final Map<File, String> xmlFileChecksums = new HashMap<>();
 
 	public Noark5Validator(T command) {
 
@@ -83,11 +118,18 @@ public abstract class Noark5Validator<T extends Noark5Command> extends Validator
 
 		try {
 
+			XMLInput.init(getCommand().getXMLInputType());
+
+			packageSource = PackageSource.open(getCommand().getExtractionDirectory(), getCommand().getThreads());
+
 			// Storage won't initialize if database file is populated
 			deleteDatabaseDirIfStorageTypeIsFile();
 
 			structure = prepareStructure();
-			validateStructure(structure);
+
+			if (!getCommand().getSinglePass()) {
+				validateStructure(structure, null);
+			}
 
 			// Init storage
 			Storage.init(getCommand().getStorageConfiguration(), getCommand().getProperties().getUniqueFieldsMap());
@@ -129,6 +171,8 @@ public abstract class Noark5Validator<T extends Noark5Command> extends Validator
 				FileUtils.deleteQuietly(structure.getNoarkSchemasDirectory());
 			}
 
+			IOUtils.closeQuietly(packageSource);
+
 			try {
 				// The code below could throw an Error and the file database (if present) will not get deleted
 				ReportFactory.generateReports(getCommand(), getCollector(), getArchiveTitle());
@@ -169,30 +213,25 @@ public abstract class Noark5Validator<T extends Noark5Command> extends Validator
 
 		// Initialize the package structure
 		Noark5PackageStructure structure = new Noark5PackageStructure(
-				getCommand().getExtractionDirectory(), tempNoarkSchemasDirectory,
+				packageSource.getDirectory(), tempNoarkSchemasDirectory,
 				getCommand().getCustomSchemaLocation());
 
 		// Create temporary files containing the original Noark 5 schemas
-		for (Noark5PackageEntity entity : structure.values()) {
-
-			for (String xsdSchemaName : entity.getXsdShemasNames()) {
-
-				String noarkSchemaLocation = getCommand().getDefaultSchemaLocation() + "/" + xsdSchemaName;
-				File tempXsdFile = new File(tempNoarkSchemasDirectory, xsdSchemaName);
-
-				FileUtils.copyInputStreamToFile(
-						getClass().getClassLoader().getResourceAsStream(noarkSchemaLocation),
-						tempXsdFile);
-			}
-		}
+		structure.extractNoarkSchemas(getCommand().getDefaultSchemaLocation());
 
 		return structure;
 	}
 
 	/**
 	 * Validates the integrity of the extraction package structure.
+	 *
+	 * @param xmlValidations
+	 * 		The {@link XMLValidation}s of the XML files if they were validated while being stored or null if the XML
+	 * 		files should be validated now
 	 */
-	private void validateStructure(Noark5PackageStructure structure) throws Exception {
+	private void validateStructure(
+			Noark5PackageStructure structure, Map<Noark5PackageEntity, XMLValidation> xmlValidations)
+			throws Exception {
 
 		boolean stopValidation = false;
 
@@ -212,7 +251,9 @@ public abstract class Noark5Validator<T extends Noark5Command> extends Validator
 			}
 
 			// Validate the extraction-distributed XML files
-			boolean isXMLValid = xmlValidator.isValid(entity, getCommand().getIgnoreNonCompliantXML());
+			boolean isXMLValid = xmlValidations != null
+					? xmlValidator.isValid(xmlValidations.get(entity), getCommand().getIgnoreNonCompliantXML())
+					: xmlValidator.isValid(entity, getCommand().getIgnoreNonCompliantXML());
 			stopValidation = stopValidation || !isXMLValid;
 		}
 
@@ -224,13 +265,38 @@ public abstract class Noark5Validator<T extends Noark5Command> extends Validator
 
 	/**
 	 * Converts the XSD Schemas to {@link Item}(s).
+	 * <p/>
+	 * The precompiled {@link ItemDefCatalog} of the Noark version is used if it was bundled with the validator and
+	 * generated by the selected {@link ConverterType}. Otherwise, the result of a previous conversion of the same
+	 * schemas by the same converter is reused from the schema cache.
 	 */
 	private void convertXSDSchemas(Noark5PackageStructure structure) throws Exception {
 
-		converter.convert(structure.getAllNoarkSchemaFiles());
+		ConverterType converterType = getCommand().getSchemaConverterType();
+
+		catalog = converterType == ItemDefCatalogGenerator.CONVERTER_TYPE
+				? ItemDefCatalog.load(getCommand().getDefaultSchemaLocation())
+				: null;
+
+		if (catalog != null) {
+			LOGGER.info("Loaded the precompiled item definitions of {}", getCommand().getDefaultSchemaLocation());
+		} else {
+			List<File> schemas = structure.getAllNoarkSchemaFiles();
+			ItemDefCatalogCache cache = new ItemDefCatalogCache(getCommand().getSchemaCacheLocation(), converterType);
+
+			catalog = cache.get(schemas);
+
+			if (catalog == null) {
+				Converter converter = converterType.createConverter();
+				converter.convert(schemas);
+				catalog = new ItemDefCatalog(converter);
+
+				cache.put(schemas, catalog);
+			}
+		}
 
 		// Add additional fields
-		for (ItemDef itemDef : converter.getItemDefs().values()) {
+		for (ItemDef itemDef : catalog.getItemDefs().values()) {
 
 			Set<String> additionalFields = getCommand().getProperties().getExtraFieldsInTable(itemDef.getFullName());
 
@@ -239,12 +305,19 @@ public abstract class Noark5Validator<T extends Noark5Command> extends Validator
 					itemDef.addField(fieldName, Field.FieldType.STRING);
 				}
 			}
+
+			if (itemDef.hasFieldWithName(BUSINESS_SPECIFIC_METADATA)) {
+				itemDef.addField(Field.BUSINESS_SPECIFIC_METADATA, Field.FieldType.BYTE_PRIMITIVE_ARRAY);
+			}
 		}
 	}
 
 	/**
 	 * Persists the structure of the converted {@link ItemDef}s within the specified
 	 * {@link Storage.StorageType}.
+	 * <p/>
+	 * The structure of an {@link ItemDef} is only created once data is stored for it or it is queried by the
+	 * validation.
 	 */
 	private void storeXSDSchemas() {
 
@@ -253,25 +326,39 @@ public abstract class Noark5Validator<T extends Noark5Command> extends Validator
 		// addml.unique element causes issues in hsqldb
 		List<String> ignoredAddmlTables = Collections.singletonList("addml.unique");
 
-		for (ItemDef itemDef : converter.getItemDefs().values()) {
+		for (ItemDef itemDef : catalog.getItemDefs().values()) {
 			if (ignoredAddmlTables.contains(itemDef.getFullName())) {
 				continue;
 			}
 			Storage.get().write(itemDef);
 		}
 
-		for (Item item : converter.getItems()) {
+		for (Item item : catalog.getItems()) {
 			Storage.get().write(item);
 		}
 	}
 
 	/**
 	 * Stores the data from the parsed XML files.
+	 * <p/>
+	 * The XML files are parsed concurrently, as each of them is stored in the {@link ItemDef}s of its own
+	 * {@link ValidationGroup}. Parse errors are collected in the order of the package entities.
+	 * <p/>
+	 * In single pass mode, each XML file is also validated while it is parsed, and the integrity of the extraction
+	 * package structure is validated once all files are parsed, so that the results are collected in the same order
+	 * as if the files had been validated before being stored.
+	 * <p/>
+	 * The profile of the extraction package is collected once all files are parsed (see
+	 * {@link #collectPackageProfile(List, List)}).
 	 */
 	private void storeXMLFiles(Noark5PackageStructure structure) throws Exception {
 
 		LOGGER.info("Storing XML data and extracting document information ...");
 
+		boolean singlePass = getCommand().getSinglePass();
+
+		List<Noark5PackageEntity> entities = new ArrayList<>();
+
 		for (Noark5PackageEntity entity : structure.values()) {
 
 			if (!entity.getXmlFile().isFile() && entity.isOptional()) {
@@ -279,39 +366,193 @@ public abstract class Noark5Validator<T extends Noark5Command> extends Validator
 				continue;
 			}
 
-			DefaultXMLHandler exceptionHandler = new DefaultXMLHandler();
-			SAXParserFactory spf = SAXParserFactory.newInstance();
-			SAXParser saxParser = spf.newSAXParser();
+			entities.add(entity);
+		}
+
+		if (entities.isEmpty()) {
+			if (singlePass) {
+				validateStructure(structure, Collections.emptyMap());
+			}
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(entities.size(), getCommand().getThreads()));
+
+		try {
+			List<BaseHandler> xmlHandlers = new ArrayList<>();
+			List<DefaultXMLHandler> exceptionHandlers = new ArrayList<>();
+			List<Future<XMLValidation>> parsers = new ArrayList<>();
+
+			for (Noark5PackageEntity entity : entities) {
+
+				DefaultXMLHandler exceptionHandler = new DefaultXMLHandler();
+				BaseHandler xmlHandler = null;
+
+				if (singlePass) {
+
+					// Missing files are reported by the validation of the package structure
+					XMLFilterImpl contentFilter = null;
+
+					if (entity.getXmlFile().isFile()) {
+						contentFilter = new XMLFilterImpl();
+						xmlHandler = HandlerFactory.createHandler(
+								entity.getXmlFile(), contentFilter, catalog.getItemDefs(), packageSource);
+
+						contentFilter.setContentHandler(xmlHandler);
+						contentFilter.setErrorHandler(exceptionHandler);
+					}
+
+					XMLFilterImpl filter = contentFilter;
+					parsers.add(executor.submit(() -> XMLValidator.validateInSinglePass(entity, filter)));
+
+				} else {
+
+					XMLReader reader = getCommand().getXMLParserType().createXMLReader();
+
+					BaseHandler handler = HandlerFactory.createHandler(
+							entity.getXmlFile(), reader, catalog.getItemDefs(), packageSource);
+
+					reader.setContentHandler(handler);
+					reader.setErrorHandler(exceptionHandler);
+
+					xmlHandler = handler;
+					parsers.add(executor.submit(() -> {
+						handler.parse(getCommand().getThreads());
+						return null;
+					}));
+				}
+
+				xmlHandlers.add(xmlHandler);
+				exceptionHandlers.add(exceptionHandler);
+			}
+
+			if (singlePass) {
+
+				Map<Noark5PackageEntity, XMLValidation> xmlValidations = new HashMap<>();
+				for (int i = 0; i < entities.size(); i++) {
+					xmlValidations.put(entities.get(i), waitForParser(parsers.get(i)));
+				}
+
+				validateStructure(structure, xmlValidations);
+			}
+
+			for (int i = 0; i < entities.size(); i++) {
+
+				XMLValidation xmlValidation = waitForParser(parsers.get(i));
+				if (xmlValidation != null && xmlValidation.getContentFailure() != null) {
+					throw xmlValidation.getContentFailure();
+				}
+
+				BaseHandler xmlHandler = xmlHandlers.get(i);
+				DefaultXMLHandler exceptionHandler = exceptionHandlers.get(i);
+
+				String checksum = xmlValidation != null
+						? xmlValidation.getXMLFileChecksum()
+						: xmlHandler.getXMLFileChecksum();
+				if (checksum != null) {
+					xmlFileChecksums.put(entities.get(i).getXmlFile(), checksum);
+				}
+
+				if (exceptionHandler.hasExceptions()) {
+					ValidationResult errorResult = new ValidationResult(
+							xmlHandler.getValidationGroup().getNextGroupId(getCollector()), "Parse errors",
+							"Exceptions that occurred while parsing the package XML files. Such exceptions might "
+									+ "indicate an error in the validator itself and should be reported to its "
+									+ "developers. Test results cannot be trusted upon such errors.",
+							xmlHandler.getValidationGroup().getName());
+					errorResult.addErrors(exceptionHandler.getExceptionsAsItems());
+					collect(errorResult);
+				}
+			}
+
+			collectPackageProfile(entities, xmlHandlers);
+
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Collects the {@link ParseStatistics} of the parsed XML files as the profile of the extraction package, i.e. the
+	 * number of elements of every {@link ItemDef}, their maximum depth, and the total and maximum length of their field
+	 * values, and writes it to {@value #PACKAGE_PROFILE_FILE_NAME} in the report output directory (if any).
+	 * <p/>
+	 * The profile is available before the extraction package is validated, so it can be used to size the resources of
+	 * the rest of the validation.
+	 */
+	private void collectPackageProfile(List<Noark5PackageEntity> entities, List<BaseHandler> xmlHandlers) {
+
+		List<String> lines = new ArrayList<>();
+		lines.add("file,element,count,max_depth,characters,max_field_length");
+
+		for (int i = 0; i < entities.size(); i++) {
+
+			BaseHandler xmlHandler = xmlHandlers.get(i);
+
+			// Missing files are not parsed in single pass mode
+			if (xmlHandler == null) {
+				continue;
+			}
+
+			String xmlFileName = entities.get(i).getXmlFileName();
+			ParseStatistics statistics = xmlHandler.getStatistics();
+
+			LOGGER.info("Parsed {} elements of {}", statistics.getElementCount(), xmlFileName);
+
+			ValidationResult profile = new ValidationResult(
+					ValidationGroup.PACKAGE.getNextGroupId(getCollector()), xmlFileName + " profile",
+					"The number of elements of every type in the XML file, the maximum number of elements enclosing "
+							+ "them, and the total and maximum number of characters in their values",
+					ValidationGroup.PACKAGE.getName());
+
+			for (ParseStatistics.ItemDefStatistics itemDefStatistics : statistics.getItemDefStatistics()) {
+
+				profile.addInformation(new BaseItem()
+						.add("Element", itemDefStatistics.getItemDef().getFullName())
+						.add("Count", itemDefStatistics.getElementCount())
+						.add("Max depth", itemDefStatistics.getMaxDepth())
+						.add("Characters", itemDefStatistics.getCharacterCount())
+						.add("Max field length", itemDefStatistics.getMaxFieldLength()));
 
-			XMLReader reader = saxParser.getXMLReader();
+				lines.add(StringUtils.join(new Object[] {
+						xmlFileName, itemDefStatistics.getItemDef().getFullName(),
+						itemDefStatistics.getElementCount(), itemDefStatistics.getMaxDepth(),
+						itemDefStatistics.getCharacterCount(), itemDefStatistics.getMaxFieldLength() }, ','));
+			}
 
-			BaseHandler xmlHandler = HandlerFactory.createHandler(entity.getXmlFile(), reader, converter.getItemDefs());
+			collect(profile);
+		}
 
-			reader.setContentHandler(xmlHandler);
-			reader.setErrorHandler(exceptionHandler);
+		File outputDir = getCommand().getReportConfiguration().getOutputDir();
 
-			try (
-					FileInputStream fis = new FileInputStream(entity.getXmlFile());
-					BufferedInputStream bis = new BufferedInputStream(fis)) {
-				reader.parse(new InputSource(bis));
+		if (outputDir != null) {
+			File profileFile = new File(outputDir, PACKAGE_PROFILE_FILE_NAME);
+			try {
+				FileUtils.writeLines(profileFile, StandardCharsets.UTF_8.name(), lines);
+			} catch (IOException ex) {
+				LOGGER.warn("Could not write the package profile to " + profileFile, ex);
 			}
+		}
+	}
+
+	private static <V> V waitForParser(Future<V> parser) throws Exception {
 
-			if (exceptionHandler.hasExceptions()) {
-				ValidationResult errorResult = new ValidationResult(
-						xmlHandler.getValidationGroup().getNextGroupId(getCollector()), "Parse errors",
-						"Exceptions that occurred while parsing the package XML files. Such exceptions might "
-								+ "indicate an error in the validator itself and should be reported to its "
-								+ "developers. Test results cannot be trusted upon such errors.",
-						xmlHandler.getValidationGroup().getName());
-				errorResult.addErrors(exceptionHandler.getExceptionsAsItems());
-				collect(errorResult);
+		try {
+			return parser.get();
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof Exception) {
+				throw (Exception) ex.getCause();
 			}
+			throw ex;
 		}
 	}
 
 	/**
 	 * Retrieves the checksums of all entities in the extraction package and stores them in the addml.property {@link
 	 * ItemDef}.
+	 * <p/>
+	 * The checksums of the XML files that were parsed completely are the ones calculated while parsing; the rest of
+	 * the files are read to calculate their checksums.
 	 */
 	private void storePackageChecksums(Noark5PackageStructure structure) throws Exception {
 
@@ -332,9 +573,11 @@ public abstract class Noark5Validator<T extends Noark5Command> extends Validator
 
 	private void storePackageEntityChecksum(File file) {
 
-		Item itemChecksum = new Item(converter.getItemDefs().get("addml.property"));
+		Item itemChecksum = new Item(catalog.getItemDefs().get("addml.property"));
 		itemChecksum.add("name", file.getName());
-		itemChecksum.add("value", ChecksumCalculator.getFileSha256Checksum(file));
+		itemChecksum.add("value", xmlFileChecksums.containsKey(file)
+				? xmlFileChecksums.get(file)
+				: ChecksumCalculator.getFileSha256Checksum(file));
 
 		Storage.get().write(itemChecksum);
 	}
@@ -356,6 +599,8 @@ public abstract class Noark5Validator<T extends Noark5Command> extends Validator
 			vp = (ValidationProvider) jaxbUnmarshaller.unmarshal(is);
 		}
 
+		createQueriedItemDefs(vp);
+
 		for (Check check : vp.getChecks()) {
 
 			LOGGER.info(MessageFormat.format("Checking: {0} ...", check.getTitle()));
@@ -399,14 +644,36 @@ public abstract class Noark5Validator<T extends Noark5Command> extends Validator
 		}
 	}
 
+	/**
+	 * Creates the structures of the {@link ItemDef}s that received no data but are queried by the validation.
+	 */
+	private void createQueriedItemDefs(ValidationProvider vp) throws Exception {
+
+		List<String> queries = new ArrayList<>();
+		queries.add(ARCHIVE_TITLE_QUERY);
+
+		for (Check check : vp.getChecks()) {
+			queries.add(check.getData().getInfoRequest());
+		}
+
+		for (Test test : vp.getTests()) {
+			queries.add(test.getData().getInfoRequest());
+			queries.add(test.getData().getWarningsRequest());
+			queries.add(test.getData().getErrorsRequest());
+		}
+
+		Storage.get().createReferencedItemDefs(queries);
+	}
+
 	private String getArchiveTitle() {
 
 		String archiveTitle = null;
 
 		try {
-			if (Storage.get() != null && Storage.get().isReadAvailable()) {
-				List<BaseItem> entries = Storage.get()
-						.fetch("SELECT value FROM addml.additionalelement WHERE name = 'archive';");
+			// The table does not exist if the execution failed before any data of it was stored or it was queried
+			if (Storage.get() != null && Storage.get().isReadAvailable()
+					&& Storage.get().hasItemDefStructure(ARCHIVE_TITLE_ITEM_DEF)) {
+				List<BaseItem> entries = Storage.get().fetch(ARCHIVE_TITLE_QUERY);
 
 				if (entries != null && !entries.isEmpty()) {
 					archiveTitle = entries.get(0).getValues().entrySet().iterator().next().getValue().toString();
@@ -18,11 +18,14 @@
 package com.documaster.validator.validation.noark5.model;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.Validate;
 
 /**
@@ -90,4 +93,24 @@ public class Noark5PackageStructure extends HashMap<String, Noark5PackageEntity>
 
 		return Collections.unmodifiableList(noarkSchemas);
 	}
+
+	/**
+	 * Copies the Noark 5.x XSD schemas of all entities from the specified class path location to the Noark schemas
+	 * directory.
+	 *
+	 * @param schemaLocation
+	 * 		The class path location of the schemas (e.g. noark5/noark55)
+	 */
+	public void extractNoarkSchemas(String schemaLocation) throws IOException {
+
+		for (Noark5PackageEntity entity : values()) {
+
+			for (String xsdSchemaName : entity.getXsdShemasNames()) {
+
+				InputStream is = getClass().getClassLoader().getResourceAsStream(schemaLocation + "/" + xsdSchemaName);
+
+				FileUtils.copyInputStreamToFile(is, new File(noarkSchemasDirectory, xsdSchemaName));
+			}
+		}
+	}
 }
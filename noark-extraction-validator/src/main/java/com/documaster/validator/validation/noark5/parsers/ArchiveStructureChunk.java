@@ -0,0 +1,368 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.parsers;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.documaster.validator.storage.core.Storage;
+import com.documaster.validator.storage.model.Item;
+import com.documaster.validator.storage.model.ItemDef;
+import com.documaster.validator.validation.noark5.source.PackageSource;
+import com.documaster.validator.validation.utils.RangeFile;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+
+/**
+ * A range of top-level mappe elements of an arkivstruktur.xml file that is parsed independently of the rest of the
+ * file (see {@link ArchiveStructureSplitter}).
+ * <p/>
+ * The chunk is parsed by an {@link ArchiveStructureHandler} of its own that collects the created {@link Item}s
+ * instead of writing them. Until the chunk is committed, the IDs of the items are local to the chunk and the
+ * references that could only be inherited from the elements enclosing the chunk are unresolved. Committing the chunk
+ * in the context of the element that encloses it in a sequential parse reserves the IDs, resolves the inherited
+ * references, and writes the items, so that the written items are identical to the ones of a sequential parse.
+ */
+final class ArchiveStructureChunk implements ErrorHandler {
+
+	/**
+	 * The element wrapping the mappe elements of the chunk, so that the chunk is a well-formed XML document
+	 */
+	private static final byte[] DOCUMENT_START = "<arkivstruktur-chunk>".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] DOCUMENT_END = "</arkivstruktur-chunk>".getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * The value of references that can only be resolved by the elements enclosing the chunk
+	 */
+	static final Object UNRESOLVED_REFERENCE = new Object();
+
+	private final long start;
+	private final int line;
+	private final int column;
+
+	private long end;
+	private int endLine;
+	private int endColumn;
+
+	private final Map<ItemDef, Integer> itemCounts = new HashMap<>();
+	private final List<Item> items = new ArrayList<>();
+	private final Map<Item, Item> parentItems = new IdentityHashMap<>();
+	private final List<Item> storedItems = new ArrayList<>();
+
+	private final List<SAXParseException> warnings = new ArrayList<>();
+	private final List<SAXParseException> errors = new ArrayList<>();
+	private final List<SAXParseException> fatalErrors = new ArrayList<>();
+
+	private ParseStatistics statistics;
+
+	private Exception failure;
+
+	ArchiveStructureChunk(long start, int line, int column) {
+
+		this.start = start;
+		this.line = line;
+		this.column = column;
+	}
+
+	long getStart() {
+
+		return start;
+	}
+
+	long getEnd() {
+
+		return end;
+	}
+
+	long getLength() {
+
+		return end - start;
+	}
+
+	/**
+	 * Retrieves the line of the first byte of the chunk.
+	 */
+	int getLine() {
+
+		return line;
+	}
+
+	/**
+	 * Retrieves the column (in characters) of the first byte of the chunk.
+	 */
+	int getColumn() {
+
+		return column;
+	}
+
+	/**
+	 * Retrieves the line of the first byte after the chunk.
+	 */
+	int getEndLine() {
+
+		return endLine;
+	}
+
+	/**
+	 * Retrieves the column (in characters) of the first byte after the chunk.
+	 */
+	int getEndColumn() {
+
+		return endColumn;
+	}
+
+	/**
+	 * Retrieves the number of line breaks in the chunk.
+	 */
+	int getLineBreaks() {
+
+		return endLine - line;
+	}
+
+	void setEnd(long end, int endLine, int endColumn) {
+
+		this.end = end;
+		this.endLine = endLine;
+		this.endColumn = endColumn;
+	}
+
+	/**
+	 * Translates a byte offset in the chunk (as parsed, i.e. wrapped in {@link #DOCUMENT_START}) to the byte offset in
+	 * the file.
+	 */
+	long toFileOffset(long offset) {
+
+		return start + offset - DOCUMENT_START.length;
+	}
+
+	/**
+	 * Parses the chunk of the specified file, reading its range of the file only. Any exception is recorded and raised
+	 * when the chunk is committed.
+	 */
+	void parse(
+			File xmlFile, RangeFile xmlFileRanges, XMLParserType parserType, Map<String, ItemDef> itemDefs,
+			PackageSource packageSource, ElementDispatchTable dispatchTable) {
+
+		ArchiveStructureHandler handler = null;
+
+		try (InputStream is = openChunk(xmlFileRanges)) {
+
+			XMLReader reader = parserType.createXMLReader();
+
+			handler = new ArchiveStructureHandler(xmlFile, reader, itemDefs, packageSource, dispatchTable, this);
+			statistics = handler.getStatistics();
+
+			reader.setContentHandler(handler);
+			reader.setErrorHandler(this);
+			reader.parse(new InputSource(is));
+
+		} catch (Exception ex) {
+			failure = ex;
+		} finally {
+			if (handler != null) {
+				handler.endMetadataWriter();
+			}
+		}
+	}
+
+	private InputStream openChunk(RangeFile xmlFileRanges) {
+
+		return new SequenceInputStream(Collections.enumeration(Arrays.asList(
+				new ByteArrayInputStream(DOCUMENT_START),
+				xmlFileRanges.open(start, getLength()),
+				new ByteArrayInputStream(DOCUMENT_END))));
+	}
+
+	/**
+	 * Creates the {@link Item} of an element of the chunk with an ID that is local to the chunk.
+	 *
+	 * @param itemDef
+	 * 		The {@link ItemDef} of the item
+	 * @param parentItem
+	 * 		The {@link Item} of the enclosing element or null if the element is a top-level mappe
+	 */
+	Item createItem(ItemDef itemDef, Item parentItem) {
+
+		Integer count = itemCounts.containsKey(itemDef) ? itemCounts.get(itemDef) + 1 : 1;
+		itemCounts.put(itemDef, count);
+
+		Item item = new Item(itemDef, count);
+
+		items.add(item);
+		if (parentItem != null) {
+			parentItems.put(item, parentItem);
+		}
+
+		return item;
+	}
+
+	/**
+	 * Records the specified {@link Item} for writing once the chunk is committed.
+	 */
+	void store(Item item) {
+
+		storedItems.add(item);
+	}
+
+	/**
+	 * Commits the chunk in the context of the current element of the specified handler, i.e. the klasse or arkivdel
+	 * the top-level mappe elements of the chunk belong to. The {@link ParseStatistics} of the chunk are added to the
+	 * ones of the handler and the errors of the chunk are reported to the specified error handler.
+	 * <p/>
+	 * Must be invoked in document order.
+	 */
+	void commit(ArchiveStructureHandler handler, ErrorHandler errorHandler) throws SAXException {
+
+		reportErrors(errorHandler);
+
+		if (failure instanceof SAXParseException) {
+			throw toDocumentException((SAXParseException) failure);
+		} else if (failure instanceof SAXException) {
+			throw (SAXException) failure;
+		} else if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure != null) {
+			throw new SAXException("Could not parse the mappe elements starting at line " + line, failure);
+		}
+
+		// Reserve the IDs the items would have been assigned in a sequential parse
+		Map<ItemDef, Integer> idOffsets = new HashMap<>();
+		for (Map.Entry<ItemDef, Integer> itemCount : itemCounts.entrySet()) {
+			idOffsets.put(itemCount.getKey(), itemCount.getKey().reserveIds(itemCount.getValue()) - 1);
+		}
+
+		for (Item item : items) {
+			item.setId(item.getId() + idOffsets.get(item.getItemDef()));
+		}
+
+		for (Item item : items) {
+			Item parentItem = parentItems.get(item);
+			if (parentItem != null) {
+				item.setParentId(parentItem.getId());
+			} else {
+				handler.addParentReferences(item);
+			}
+		}
+
+		for (Item item : items) {
+			for (Map.Entry<String, Object> value : item.getValues().entrySet()) {
+				if (value.getValue() == UNRESOLVED_REFERENCE) {
+					value.setValue(resolveReference(getTopLevelItem(item), value.getKey(), handler));
+				}
+			}
+		}
+
+		handler.getStatistics().merge(statistics, handler.getDepth());
+
+		for (Item item : storedItems) {
+			Storage.get().write(item);
+		}
+	}
+
+	/**
+	 * Resolves a reference that could not be inherited within the chunk. In a sequential parse the lookup would have
+	 * continued with the top-level mappe and the elements enclosing it.
+	 */
+	private static Object resolveReference(Item topLevelItem, String reference, ArchiveStructureHandler handler) {
+
+		if (topLevelItem.getValues().containsKey(reference)) {
+			return topLevelItem.getValues().get(reference);
+		}
+
+		return handler.getReferenceFromParent(reference);
+	}
+
+	private Item getTopLevelItem(Item item) {
+
+		Item topLevelItem = item;
+
+		while (parentItems.containsKey(topLevelItem)) {
+			topLevelItem = parentItems.get(topLevelItem);
+		}
+
+		return topLevelItem;
+	}
+
+	private void reportErrors(ErrorHandler errorHandler) throws SAXException {
+
+		if (errorHandler == null) {
+			return;
+		}
+
+		for (SAXParseException warning : warnings) {
+			errorHandler.warning(toDocumentException(warning));
+		}
+		for (SAXParseException error : errors) {
+			errorHandler.error(toDocumentException(error));
+		}
+		for (SAXParseException fatalError : fatalErrors) {
+			errorHandler.fatalError(toDocumentException(fatalError));
+		}
+	}
+
+	/**
+	 * Translates the location of an exception in the chunk to its location in the file.
+	 */
+	private SAXParseException toDocumentException(SAXParseException ex) {
+
+		int exceptionLine = ex.getLineNumber();
+		int exceptionColumn = ex.getColumnNumber();
+
+		if (exceptionLine == 1 && exceptionColumn != -1) {
+			exceptionColumn = exceptionColumn - DOCUMENT_START.length + column - 1;
+		}
+		if (exceptionLine != -1) {
+			exceptionLine = exceptionLine + line - 1;
+		}
+
+		return new SAXParseException(
+				ex.getMessage(), ex.getPublicId(), ex.getSystemId(), exceptionLine, exceptionColumn,
+				ex.getException());
+	}
+
+	@Override
+	public void warning(SAXParseException exception) {
+
+		warnings.add(exception);
+	}
+
+	@Override
+	public void error(SAXParseException exception) {
+
+		errors.add(exception);
+	}
+
+	@Override
+	public void fatalError(SAXParseException exception) {
+
+		fatalErrors.add(exception);
+	}
+}
@@ -0,0 +1,422 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.parsers;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.documaster.validator.storage.model.ItemDef;
+import com.documaster.validator.validation.noark5.source.PackageSource;
+import com.documaster.validator.validation.utils.RangeFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Parses an arkivstruktur.xml file whose top-level mappe elements have been split into {@link ArchiveStructureChunk}s.
+ * <p/>
+ * The chunks are parsed concurrently, while the rest of the file is parsed by the root {@link ArchiveStructureHandler}
+ * with each chunk replaced by a marker element. Once the root handler encounters a marker, it waits for the
+ * corresponding chunk and commits it. At most {@value #CHUNKS_PER_THREAD} chunks per thread are parsed ahead of the
+ * chunk that is to be committed next, so that the memory held by parsed chunks is bounded.
+ * <p/>
+ * The chunks and the rest of the file are read from the same {@link RangeFile}, so the chunks are neither read by the
+ * root handler nor read through by the chunks following them. The locations of the errors the root handler reports
+ * on the lines the markers end on are translated to the locations in the file.
+ * <p/>
+ * The chunks are parsed with the same {@link XMLParserType} as the rest of the file.
+ */
+final class ArchiveStructureChunkParser {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveStructureChunkParser.class);
+
+	/**
+	 * The name of the element that replaces the chunks
+	 */
+	static final String MARKER_ELEMENT = "arkivstruktur-chunk-marker";
+
+	private static final int CHUNKS_PER_THREAD = 2;
+
+	private final ArchiveStructureHandler rootHandler;
+
+	private final RangeFile xmlFileRanges;
+
+	private final List<ArchiveStructureChunk> chunks;
+
+	private final int threads;
+
+	private final Iterator<ArchiveStructureChunk> unscheduledChunks;
+
+	private final Queue<Future<ArchiveStructureChunk>> scheduledChunks = new ArrayDeque<>();
+
+	private ExecutorService executor;
+
+	/**
+	 * The error handler of the root handler's reader, which the errors of the root handler are reported to with their
+	 * locations translated
+	 */
+	private ErrorHandler errorHandler;
+
+	/**
+	 * The column shifts after the markers, by the line the markers end on (see {@link ColumnShift})
+	 */
+	private final Map<Integer, List<ColumnShift>> columnShifts = new HashMap<>();
+
+	/**
+	 * The difference between the offsets in the file and the offsets in the stream with the chunks replaced by markers
+	 * after the last marker encountered by the root handler
+	 */
+	private long offsetShift = 0;
+
+	ArchiveStructureChunkParser(
+			ArchiveStructureHandler rootHandler, RangeFile xmlFileRanges, List<ArchiveStructureChunk> chunks,
+			int threads) {
+
+		this.rootHandler = rootHandler;
+		this.xmlFileRanges = xmlFileRanges;
+		this.chunks = chunks;
+		this.threads = threads;
+		this.unscheduledChunks = chunks.iterator();
+
+		createColumnShifts();
+	}
+
+	/**
+	 * Parses the file.
+	 */
+	void parse() throws IOException, SAXException {
+
+		LOGGER.info(
+				"Parsing {} in {} chunks with {} threads ...", rootHandler.getXMLFile().getName(), chunks.size(),
+				threads);
+
+		executor = Executors.newFixedThreadPool(threads);
+
+		errorHandler = rootHandler.getReader().getErrorHandler();
+		rootHandler.getReader().setErrorHandler(new LocationTranslatingErrorHandler());
+
+		try {
+			for (int i = 0; i < threads * CHUNKS_PER_THREAD; i++) {
+				scheduleNextChunk();
+			}
+
+			try (InputStream is = new ChunkMarkingInputStream(xmlFileRanges.open(), chunks)) {
+				rootHandler.getReader().parse(new InputSource(is));
+			}
+
+		} finally {
+			rootHandler.getReader().setErrorHandler(errorHandler);
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Waits for the next chunk (in document order) to be parsed and commits it in the context of the current element
+	 * of the root handler.
+	 */
+	void commitNextChunk() throws SAXException {
+
+		nextChunk().commit(rootHandler, errorHandler);
+	}
+
+	private ArchiveStructureChunk nextChunk() throws SAXException {
+
+		Future<ArchiveStructureChunk> chunk = scheduledChunks.poll();
+
+		if (chunk == null) {
+			throw new SAXException("Encountered an unexpected " + MARKER_ELEMENT + " element");
+		}
+
+		scheduleNextChunk();
+
+		try {
+			ArchiveStructureChunk nextChunk = chunk.get();
+			offsetShift += nextChunk.getLength() - ChunkMarkingInputStream.createMarker(nextChunk).length;
+			return nextChunk;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new SAXException("Interrupted while parsing " + rootHandler.getXMLFile().getName(), ex);
+		} catch (ExecutionException ex) {
+			throw new SAXException("Could not parse " + rootHandler.getXMLFile().getName(), ex);
+		}
+	}
+
+	/**
+	 * Translates a byte offset in the stream with the chunks replaced by markers to the byte offset in the file.
+	 * <p/>
+	 * Only valid for the offsets of the current event of the root handler.
+	 */
+	long toFileOffset(long offset) {
+
+		return offset + offsetShift;
+	}
+
+	private void scheduleNextChunk() {
+
+		if (!unscheduledChunks.hasNext()) {
+			return;
+		}
+
+		ArchiveStructureChunk chunk = unscheduledChunks.next();
+		File xmlFile = rootHandler.getXMLFile();
+		XMLParserType parserType = XMLParserType.of(rootHandler.getReader());
+		Map<String, ItemDef> itemDefs = rootHandler.getItemDefs();
+		PackageSource packageSource = rootHandler.getPackageSource();
+		ElementDispatchTable dispatchTable = rootHandler.getDispatchTable();
+
+		scheduledChunks.add(executor.submit(() -> {
+			chunk.parse(xmlFile, xmlFileRanges, parserType, itemDefs, packageSource, dispatchTable);
+			return chunk;
+		}));
+	}
+
+	/**
+	 * Calculates the difference between the columns in the file and the columns in the stream with the chunks
+	 * replaced by markers after each marker. A marker spans the same lines as its chunk, but not the same columns on
+	 * the line it ends on.
+	 */
+	private void createColumnShifts() {
+
+		for (ArchiveStructureChunk chunk : chunks) {
+
+			byte[] marker = ChunkMarkingInputStream.createMarker(chunk);
+
+			// A chunk may start on the line the previous marker ended on
+			int streamColumn = chunk.getColumn() - getColumnShift(chunk.getLine(), Integer.MAX_VALUE);
+
+			int markerEndColumn = chunk.getLineBreaks() > 0
+					? marker.length - lastIndexOf(marker, (byte) '\n')
+					: streamColumn + marker.length;
+
+			ColumnShift columnShift = new ColumnShift(markerEndColumn, chunk.getEndColumn() - markerEndColumn);
+
+			if (!columnShifts.containsKey(chunk.getEndLine())) {
+				columnShifts.put(chunk.getEndLine(), new ArrayList<>());
+			}
+			columnShifts.get(chunk.getEndLine()).add(columnShift);
+		}
+	}
+
+	/**
+	 * Retrieves the difference between the column in the file and the specified column in the stream with the chunks
+	 * replaced by markers.
+	 */
+	private int getColumnShift(int line, int streamColumn) {
+
+		int shift = 0;
+
+		if (columnShifts.containsKey(line)) {
+			for (ColumnShift columnShift : columnShifts.get(line)) {
+				if (columnShift.streamColumn <= streamColumn) {
+					shift = columnShift.shift;
+				}
+			}
+		}
+
+		return shift;
+	}
+
+	private static int lastIndexOf(byte[] bytes, byte b) {
+
+		for (int i = bytes.length - 1; i >= 0; i--) {
+			if (bytes[i] == b) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * The difference between the columns in the file and the columns in the stream with the chunks replaced by markers
+	 * from a column of the stream (the column following a marker) to the end of its line or the next marker.
+	 */
+	private static final class ColumnShift {
+
+		private final int streamColumn;
+
+		private final int shift;
+
+		private ColumnShift(int streamColumn, int shift) {
+
+			this.streamColumn = streamColumn;
+			this.shift = shift;
+		}
+	}
+
+	/**
+	 * Reports the errors of the root handler to the error handler of its reader with their locations in the file.
+	 * Fatal errors are thrown with the translated location as well.
+	 */
+	private final class LocationTranslatingErrorHandler implements ErrorHandler {
+
+		@Override
+		public void warning(SAXParseException exception) throws SAXException {
+
+			if (errorHandler != null) {
+				errorHandler.warning(toFileException(exception));
+			}
+		}
+
+		@Override
+		public void error(SAXParseException exception) throws SAXException {
+
+			if (errorHandler != null) {
+				errorHandler.error(toFileException(exception));
+			}
+		}
+
+		@Override
+		public void fatalError(SAXParseException exception) throws SAXException {
+
+			SAXParseException fileException = toFileException(exception);
+
+			if (errorHandler != null) {
+				errorHandler.fatalError(fileException);
+			}
+
+			throw fileException;
+		}
+
+		private SAXParseException toFileException(SAXParseException ex) {
+
+			if (ex.getLineNumber() == -1 || ex.getColumnNumber() == -1) {
+				return ex;
+			}
+
+			int shift = getColumnShift(ex.getLineNumber(), ex.getColumnNumber());
+
+			if (shift == 0) {
+				return ex;
+			}
+
+			return new SAXParseException(
+					ex.getMessage(), ex.getPublicId(), ex.getSystemId(), ex.getLineNumber(),
+					ex.getColumnNumber() + shift, ex.getException());
+		}
+	}
+
+	/**
+	 * Reads an XML file with each of the specified chunks replaced by an empty marker element that spans the same
+	 * number of lines as the chunk, so that the line numbers of the rest of the file are retained.
+	 * <p/>
+	 * The chunks are skipped without being read.
+	 */
+	private static final class ChunkMarkingInputStream extends InputStream {
+
+		private final InputStream is;
+
+		private final Iterator<ArchiveStructureChunk> chunks;
+
+		private ArchiveStructureChunk nextChunk;
+
+		private long position = 0;
+
+		private byte[] marker;
+		private int markerPosition;
+
+		private ChunkMarkingInputStream(InputStream is, List<ArchiveStructureChunk> chunks) {
+
+			this.is = is;
+			this.chunks = chunks.iterator();
+			this.nextChunk = this.chunks.hasNext() ? this.chunks.next() : null;
+		}
+
+		@Override
+		public int read() throws IOException {
+
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+
+			if (len == 0) {
+				return 0;
+			}
+
+			if (marker == null && nextChunk != null && position == nextChunk.getStart()) {
+
+				if (is.skip(nextChunk.getLength()) != nextChunk.getLength()) {
+					throw new EOFException("Unexpected end of file");
+				}
+				position = nextChunk.getEnd();
+
+				marker = createMarker(nextChunk);
+				markerPosition = 0;
+
+				nextChunk = chunks.hasNext() ? chunks.next() : null;
+			}
+
+			if (marker != null) {
+
+				int count = Math.min(len, marker.length - markerPosition);
+				System.arraycopy(marker, markerPosition, b, off, count);
+
+				markerPosition += count;
+				if (markerPosition == marker.length) {
+					marker = null;
+				}
+
+				return count;
+			}
+
+			int limit = nextChunk != null ? (int) Math.min(len, nextChunk.getStart() - position) : len;
+			int count = is.read(b, off, limit);
+
+			if (count > 0) {
+				position += count;
+			}
+
+			return count;
+		}
+
+		private static byte[] createMarker(ArchiveStructureChunk chunk) {
+
+			char[] lineBreaks = new char[chunk.getLineBreaks()];
+			Arrays.fill(lineBreaks, '\n');
+
+			return ("<" + MARKER_ELEMENT + new String(lineBreaks) + "/>").getBytes(StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public void close() throws IOException {
+
+			is.close();
+		}
+	}
+}
@@ -19,6 +19,9 @@ package com.documaster.validator.validation.noark5.parsers;
 
 import java.io.File;
 import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 import com.documaster.validator.storage.core.Storage;
@@ -26,56 +29,194 @@ import com.documaster.validator.storage.model.Field;
 import com.documaster.validator.storage.model.Item;
 import com.documaster.validator.storage.model.ItemDef;
 import com.documaster.validator.validation.noark5.provider.ValidationGroup;
-import com.documaster.validator.validation.utils.ChecksumCalculator;
-import com.documaster.validator.validation.utils.PDFAValidator;
-import org.apache.commons.io.FilenameUtils;
+import com.documaster.validator.validation.noark5.source.DocumentInfo;
+import com.documaster.validator.validation.noark5.source.PackageSource;
+import com.documaster.validator.validation.utils.RangeFile;
+import com.documaster.validator.validation.utils.XMLInput;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.Attributes;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 import org.xml.sax.XMLReader;
 
 /**
  * A handler for Noark 5 arkivstruktur.xml file.
+ * <p/>
+ * The business-specific metadata of an element is not broken down into fields. It is stored compressed in the
+ * {@link Field#BUSINESS_SPECIFIC_METADATA} field of the element's {@link Item} instead, to be queried by the
+ * validation if needed. Metadata that exceeds {@link Field#MAX_BINARY_LENGTH} when compressed is reported as an
+ * error and not stored.
  */
 class ArchiveStructureHandler extends BaseHandler {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveStructureHandler.class);
 
-	private boolean isInLeafElementWithTheSameName = false;
-	private boolean isInBusinessSpecificMetadata = false;
+	/**
+	 * The minimum size of the chunks a file is split into when parsed with multiple threads
+	 */
+	private static final long CHUNK_SIZE = 1024 * 1024;
+
+	private static final String FOLDER = "mappe";
+
+	private static final String BUSINESS_SPECIFIC_METADATA = "virksomhetsspesifikkeMetadata";
+
+	private static final String NAMESPACES_FEATURE = "http://xml.org/sax/features/namespaces";
+
+	/**
+	 * The chunk parsed by this handler or null if the handler parses the file itself
+	 */
+	private final ArchiveStructureChunk chunk;
+
+	private final PackageSource packageSource;
+
+	private ArchiveStructureChunkParser chunkParser;
+
+	private final CompressedXMLWriter metadataWriter = new CompressedXMLWriter();
+
+	private Locator locator;
+
+	ArchiveStructureHandler(
+			File xmlFile, XMLReader reader, Map<String, ItemDef> itemDefs, PackageSource packageSource) {
+
+		this(xmlFile, reader, itemDefs, packageSource, null, null);
+	}
+
+	/**
+	 * Creates the root handler of the specified chunk of the file.
+	 */
+	ArchiveStructureHandler(
+			File xmlFile, XMLReader reader, Map<String, ItemDef> itemDefs, PackageSource packageSource,
+			ElementDispatchTable dispatchTable, ArchiveStructureChunk chunk) {
+
+		super(xmlFile, reader, itemDefs, ValidationGroup.ARCHIVE_STRUCTURE, dispatchTable);
+		Validate.notNull(packageSource, "The package source cannot be null");
+
+		this.chunk = chunk;
+		this.packageSource = packageSource;
+
+		// Within a chunk, the references that are not visible in the chunk itself are resolved on commit
+		if (chunk != null) {
+			Arrays.fill(getFrame().getReferences(), ArchiveStructureChunk.UNRESOLVED_REFERENCE);
+		}
+	}
+
+	/**
+	 * Parses the file concurrently in chunks of top-level mappe elements if multiple threads are allowed and the file
+	 * is large enough; sequentially if not.
+	 * <p/>
+	 * The chunks are parsed without the namespace declarations of the elements enclosing them, so the file is only
+	 * split if the reader is not namespace-aware.
+	 */
+	@Override
+	public void parse(int threads) throws IOException, SAXException {
+
+		try {
+			if (threads > 1 && getXMLFile().length() >= 2 * CHUNK_SIZE
+					&& getDispatchTable().get(FOLDER).getItemDef() != null
+					&& !getReader().getFeature(NAMESPACES_FEATURE)) {
+
+				try (RangeFile xmlFileRanges = XMLInput.openRanges(getXMLFile())) {
+
+					MessageDigest digest = DigestUtils.getSha256Digest();
+					List<ArchiveStructureChunk> chunks =
+							ArchiveStructureSplitter.split(xmlFileRanges, CHUNK_SIZE, digest);
 
-	ArchiveStructureHandler(File xmlFile, XMLReader reader, Map<String, ItemDef> itemDefs) {
+					if (chunks.size() > 1) {
+						chunkParser = new ArchiveStructureChunkParser(this, xmlFileRanges, chunks, threads);
+						chunkParser.parse();
 
-		super(xmlFile, reader, itemDefs, ValidationGroup.ARCHIVE_STRUCTURE);
+						// The splitter has read the whole file
+						setXMLFileChecksum(Hex.encodeHexString(digest.digest()));
+						return;
+					}
+				}
+			}
+
+			super.parse(threads);
+
+		} finally {
+			endMetadataWriter();
+		}
+	}
+
+	/**
+	 * Releases the native resources of the writer of the business-specific metadata, which are created when the first
+	 * metadata element is parsed. The parse may fail before the end of the document is reached.
+	 */
+	void endMetadataWriter() {
+
+		metadataWriter.end();
+	}
+
+	PackageSource getPackageSource() {
+
+		return packageSource;
+	}
+
+	@Override
+	ArchiveStructureFrame getFrame() {
+
+		return (ArchiveStructureFrame) super.getFrame();
+	}
+
+	@Override
+	Frame createFrame() {
+
+		return new ArchiveStructureFrame(getDispatchTable().getReferenceCount());
 	}
 
-	private ArchiveStructureHandler(ArchiveStructureHandler parentHandler, ItemDef itemDefs) {
+	@Override
+	Item createChildItem(ItemDef itemDef) {
+
+		return chunk != null ? chunk.createItem(itemDef, getItem()) : super.createChildItem(itemDef);
+	}
+
+	@Override
+	public void setDocumentLocator(Locator locator) {
+
+		this.locator = locator;
+	}
+
+	@Override
+	public void endDocument() throws SAXException {
 
-		super(parentHandler, itemDefs, ValidationGroup.ARCHIVE_STRUCTURE);
+		endMetadataWriter();
 	}
 
 	@Override
 	public void startElement(String uri, String local, String qName, Attributes attributes) throws SAXException {
 
-		characters.setLength(0);
+		ArchiveStructureFrame frame = getFrame();
+		frame.characters.setLength(0);
 
-		// Ignore business-specific metadata
-		if (isInBusinessSpecificMetadata || qName.equalsIgnoreCase("virksomhetsspesifikkeMetadata")) {
-			isInBusinessSpecificMetadata = true;
+		// The mappe elements of a chunk that was parsed concurrently
+		if (chunkParser != null && qName.equals(ArchiveStructureChunkParser.MARKER_ELEMENT)) {
+			chunkParser.commitNextChunk();
 			return;
 		}
 
-		String nextElementName = qName.toLowerCase();
-		String nextItemDefName = getItemDefNameForElement(nextElementName);
+		// Capture business-specific metadata as is, without interpreting it
+		if (metadataWriter.isWriting() || qName.equalsIgnoreCase(BUSINESS_SPECIFIC_METADATA)) {
+			metadataWriter.startElement(qName, attributes);
+			return;
+		}
 
-		if (getItemDefs().containsKey(nextItemDefName)) {
+		ElementDispatchTable.Element nextElement = getDispatchTable().get(qName);
+		ItemDef nextItemDef = nextElement.getItemDef();
+
+		if (nextItemDef != null) {
 			if (getItem() != null) {
-				String currentItemDefName = getItem().getItemDef().getFullName();
-				boolean hasLeafElementWithTheSameName = getItem().getItemDef().hasFieldWithName(nextElementName);
+				ItemDef currentItemDef = getItem().getItemDef();
+				boolean hasLeafElementWithTheSameName = currentItemDef.hasFieldWithName(nextElement.getName());
 
-				if (currentItemDefName.equals(nextItemDefName) && hasLeafElementWithTheSameName) {
-					isInLeafElementWithTheSameName = true;
+				if (currentItemDef == nextItemDef && hasLeafElementWithTheSameName) {
+					frame.isInLeafElementWithTheSameName = true;
 					return;
 				}
 			}
@@ -89,22 +230,48 @@ class ArchiveStructureHandler extends BaseHandler {
 				}
 			}
 
-			setContentHandler(new ArchiveStructureHandler(this, getItemDefs().get(nextItemDefName)), type);
+			Item childItem = createChildItem(nextItemDef);
+			childItem.setType(type != null ? type : nextItemDef.getName());
+			addParentReferences(childItem);
+
+			ArchiveStructureFrame childFrame = (ArchiveStructureFrame) pushFrame(childItem);
+			frame.inheritReferences(childFrame, getDispatchTable());
 		}
 	}
 
 	@Override
 	public void endElement(String uri, String localName, String qName) throws SAXException {
 
-		// Ignore business-specific metadata
-		if (isInBusinessSpecificMetadata) {
-			if (qName.equalsIgnoreCase("virksomhetsspesifikkeMetadata")) {
-				isInBusinessSpecificMetadata = false;
+		if (chunkParser != null && qName.equals(ArchiveStructureChunkParser.MARKER_ELEMENT)) {
+			return;
+		}
+
+		// The root frame of a chunk receives the closing tag of the element wrapping the chunk
+		if (chunk != null && getItem() == null) {
+			return;
+		}
+
+		if (metadataWriter.isWriting()) {
+			if (metadataWriter.endElement(qName)) {
+				byte[] metadata = metadataWriter.finish();
+				if (getItem() != null) {
+					if (metadata.length <= Field.MAX_BINARY_LENGTH) {
+						getItem().addNormalized(Field.BUSINESS_SPECIFIC_METADATA, metadata);
+					} else {
+						reportError(String.format(
+								"The business-specific metadata of %s %s is %d bytes when compressed, which exceeds "
+										+ "the maximum of %d bytes; it has not been stored",
+								getItem().getItemDef().getName(), getItem().getValues().get("systemid"),
+								metadata.length, Field.MAX_BINARY_LENGTH));
+					}
+				}
 			}
 			return;
 		}
 
-		String elementName = qName.toLowerCase();
+		ArchiveStructureFrame frame = getFrame();
+
+		String elementName = getDispatchTable().get(qName).getName();
 
 		// Handle document object-specific logic
 		if (elementName.equals("dokumentobjekt")) {
@@ -112,18 +279,12 @@ class ArchiveStructureHandler extends BaseHandler {
 			LOGGER.debug("Extracting file information for {} ...", getItem().getValues().get("referansedokumentfil"));
 
 			try {
-				String filename = FilenameUtils
-						.separatorsToSystem(getItem().getValues().get("referansedokumentfil").toString());
-				File document = new File(getXMLFile().getParentFile(), filename);
+				DocumentInfo documentInfo =
+						packageSource.getDocumentInfo(getItem().getValues().get("referansedokumentfil").toString());
 
-				String checksum = ChecksumCalculator.getFileSha256Checksum(document);
-				boolean isValidPdfA = PDFAValidator.isValidPdfaFile(document);
-
-				String contentType = isValidPdfA ? PDFAValidator.VALID_FILE_TYPE : PDFAValidator.getFileType(document);
-
-				getItem().add(Field.DETECTED_FILE_TYPE, contentType);
-				getItem().add(Field.DETECTED_CHECKSUM, checksum);
-				getItem().add(Field.IS_VALID_FILE_TYPE, isValidPdfA);
+				getItem().addNormalized(Field.DETECTED_FILE_TYPE, documentInfo.getContentType());
+				getItem().addNormalized(Field.DETECTED_CHECKSUM, documentInfo.getChecksum());
+				getItem().addNormalized(Field.IS_VALID_FILE_TYPE, documentInfo.isValidPdfA());
 
 			} catch (IOException ex) {
 
@@ -132,57 +293,143 @@ class ArchiveStructureHandler extends BaseHandler {
 			}
 		}
 
-		if (elementName.equals(getItem().getItemDef().getName()) && !isInLeafElementWithTheSameName) {
-			Storage.get().write(getItem());
-			releaseContentHandler();
+		if (elementName.equals(getItem().getItemDef().getName()) && !frame.isInLeafElementWithTheSameName) {
+			getItem().setEndOffset(getTagEnd());
+			if (chunk != null) {
+				chunk.store(getItem());
+			} else {
+				Storage.get().write(getItem());
+			}
+			popFrame();
+		} else {
+			frame.isInLeafElementWithTheSameName = false;
+			addValue(elementName, frame.characters.toString());
+		}
+	}
+
+	@Override
+	public void characters(char[] buf, int offset, int length) throws SAXException {
+
+		if (metadataWriter.isWriting()) {
+			metadataWriter.characters(buf, offset, length);
 		} else {
-			isInLeafElementWithTheSameName = false;
-			getItem().add(elementName, characters.toString());
+			super.characters(buf, offset, length);
 		}
 	}
 
 	/**
-	 * Sets the XML context to the specified {@link BaseHandler} class.
+	 * Reports an error at the current location to the error handler of the reader.
 	 */
-	@Override
-	void setContentHandler(BaseHandler handler, String type) throws SAXException {
+	private void reportError(String message) throws SAXException {
 
-		Item childItem = handler.getItem();
-		ItemDef childItemDef = childItem.getItemDef();
+		ErrorHandler errorHandler = getReader().getErrorHandler();
 
-		ItemDef itemDef = getItem() != null ? getItem().getItemDef() : null;
+		if (errorHandler == null) {
+			LOGGER.warn(message);
+			return;
+		}
 
-		if (itemDef != null) {
+		errorHandler.error(locator != null
+				? new SAXParseException(message, locator)
+				: new SAXParseException(message, null, null, -1, -1));
+	}
 
-			childItem.add(itemDef.getReferenceName(), getItem().getValues().get("systemid"));
-			childItem.setParentId(getItem().getId());
+	/**
+	 * Translates the offsets in a chunk or in the file with the chunks replaced by markers to offsets in the file.
+	 */
+	@Override
+	Long toFileOffset(long offset) {
+
+		if (offset == -1) {
+			return null;
+		} else if (chunk != null) {
+			return chunk.toFileOffset(offset);
+		} else if (chunkParser != null) {
+			return chunkParser.toFileOffset(offset);
+		}
 
-			for (ItemDef relatedItemDefinition : getItemDefs().values()) {
+		return offset;
+	}
 
-				String itemDefRef = relatedItemDefinition.getReferenceName();
+	/**
+	 * Adds the ID of the current {@link Item} and the references the specified child {@link Item} inherits from the
+	 * current {@link Item} and its parents to the child.
+	 */
+	void addParentReferences(Item childItem) {
 
-				if (childItemDef.hasFieldWithName(itemDefRef) && !itemDefRef.equals(itemDef.getReferenceName())) {
-					childItem.add(itemDefRef, getReferenceFromParent(itemDefRef));
-				}
+		if (getItem() == null) {
+			return;
+		}
+
+		ElementDispatchTable dispatchTable = getDispatchTable();
+		int itemDefReference = dispatchTable.getReferenceIndex(getItem().getItemDef());
+		Object[] references = getFrame().getReferences();
+
+		childItem.addNormalized(
+				dispatchTable.getReferenceName(itemDefReference), getItem().getValues().get("systemid"));
+		childItem.setParentId(getItem().getId());
+
+		for (int itemDefRef : dispatchTable.getInheritedReferences(childItem.getItemDef())) {
+			if (itemDefRef != itemDefReference) {
+				childItem.addNormalized(dispatchTable.getReferenceName(itemDefRef), references[itemDefRef]);
 			}
 		}
+	}
 
-		super.setContentHandler(handler, type);
+	/**
+	 * Retrieves the value of the specified reference that is visible at the current element.
+	 * <p/>
+	 * Within a chunk, a reference that none of the chunk's elements has is unresolved until the chunk is committed.
+	 */
+	Object getReferenceFromParent(String itemDefRef) {
+
+		int index = getDispatchTable().getReferenceIndex(itemDefRef);
+
+		return index != -1 ? getFrame().getReferences()[index] : null;
 	}
 
-	private Object getReferenceFromParent(String itemDefRef) {
+	/**
+	 * The state of an element of an arkivstruktur.xml file with an {@link ItemDef}.
+	 */
+	static final class ArchiveStructureFrame extends Frame {
+
+		private boolean isInLeafElementWithTheSameName = false;
+
+		/**
+		 * The values of the references visible at the element, indexed as in the {@link ElementDispatchTable}. A
+		 * reference is visible if the element's or one of its parents' items has it; the closest one takes precedence.
+		 */
+		private final Object[] references;
+
+		private ArchiveStructureFrame(int referenceCount) {
+
+			this.references = new Object[referenceCount];
+		}
+
+		Object[] getReferences() {
 
-		BaseHandler handler = this;
-		Object referenceValue = null;
+			return references;
+		}
+
+		/**
+		 * Makes the references visible at this frame's element and the reference to its {@link Item} visible at the
+		 * element of the specified child frame.
+		 */
+		private void inheritReferences(ArchiveStructureFrame childFrame, ElementDispatchTable dispatchTable) {
 
-		while (handler != null) {
-			if (handler.getItem() != null && handler.getItem().getValues().containsKey(itemDefRef)) {
-				referenceValue = handler.getItem().getValues().get(itemDefRef);
-				break;
+			System.arraycopy(references, 0, childFrame.references, 0, references.length);
+
+			if (getItem() != null) {
+				childFrame.references[dispatchTable.getReferenceIndex(getItem().getItemDef())] =
+						getItem().getValues().get("systemid");
 			}
-			handler = handler.getParentHandler();
 		}
 
-		return referenceValue;
+		@Override
+		void reset(Item item) {
+
+			super.reset(item);
+			isInLeafElementWithTheSameName = false;
+		}
 	}
 }
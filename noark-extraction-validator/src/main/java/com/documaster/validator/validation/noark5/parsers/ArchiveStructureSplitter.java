@@ -0,0 +1,504 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.parsers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.documaster.validator.validation.utils.RangeFile;
+
+/**
+ * Splits a Noark 5 arkivstruktur.xml file into {@link ArchiveStructureChunk}s that can be parsed independently of
+ * each other.
+ * <p/>
+ * The file is scanned byte by byte without being parsed. A chunk consists of one or more top-level mappe elements,
+ * i.e. mappe elements that are direct children of a klasse or an arkivdel and that are not nested in another mappe, a
+ * registrering, or business-specific metadata. Consecutive top-level mappe elements of the same parent that are
+ * separated only by whitespace are grouped in a single chunk until the chunk reaches the requested size.
+ * <p/>
+ * Only UTF-8 (and US-ASCII) XML 1.0 files without a document type declaration are split, since entities declared in
+ * a document type declaration could change the structure the scanner sees. No chunks are returned for any other file
+ * or for a file the scanner cannot follow; such files must be parsed sequentially.
+ */
+final class ArchiveStructureSplitter {
+
+	private static final String FOLDER = "mappe";
+	private static final String[] FOLDER_PARENTS = { "klasse", "arkivdel" };
+	private static final String[] NON_SPLITTABLE_ANCESTORS = {
+			"mappe", "registrering", "virksomhetsspesifikkeMetadata" };
+
+	private static final byte[] COMMENT_END = "-->".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] CDATA_START = "CDATA[".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] CDATA_END = "]]>".getBytes(StandardCharsets.US_ASCII);
+
+	private static final Pattern VERSION_PATTERN = Pattern.compile("\\bversion\\s*=\\s*[\"']([^\"']*)[\"']");
+	private static final Pattern ENCODING_PATTERN = Pattern.compile("\\bencoding\\s*=\\s*[\"']([^\"']*)[\"']");
+
+	private final Scanner scanner;
+
+	private final long chunkSize;
+
+	private final Deque<Element> elements = new ArrayDeque<>();
+
+	private final List<ArchiveStructureChunk> chunks = new ArrayList<>();
+
+	private ArchiveStructureChunk chunk;
+	private Element chunkParent;
+	private boolean isChunkExtensible = false;
+	private boolean isInChunk = false;
+
+	private ArchiveStructureSplitter(InputStream is, long chunkSize) {
+
+		this.scanner = new Scanner(is);
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Splits the specified arkivstruktur.xml file into chunks of (at least) the specified size.
+	 * <p/>
+	 * The scanned bytes are added to the specified digest, so that the checksum of the file is known without reading
+	 * the file once more. The whole file has been added to the digest if it could be split.
+	 *
+	 * @return The chunks in document order or an empty list if the file cannot be split
+	 */
+	static List<ArchiveStructureChunk> split(RangeFile xmlFile, long chunkSize, MessageDigest digest)
+			throws IOException {
+
+		try (InputStream is = new DigestInputStream(xmlFile.open(), digest)) {
+			return new ArchiveStructureSplitter(is, chunkSize).split();
+		}
+	}
+
+	private List<ArchiveStructureChunk> split() throws IOException {
+
+		if (!readByteOrderMark()) {
+			return Collections.emptyList();
+		}
+
+		int b;
+		while ((b = scanner.read()) != -1) {
+
+			if (b != '<') {
+				if (!isWhitespace(b)) {
+					isChunkExtensible = false;
+				}
+				continue;
+			}
+
+			long markupStart = scanner.getPosition() - 1;
+			int markupLine = scanner.getLine();
+			int markupColumn = scanner.getColumn() - 1;
+
+			if (!readMarkup(markupStart, markupLine, markupColumn)) {
+				return Collections.emptyList();
+			}
+		}
+
+		if (!elements.isEmpty()) {
+			// Unclosed elements
+			return Collections.emptyList();
+		}
+
+		closeChunk();
+
+		return chunks;
+	}
+
+	private boolean readByteOrderMark() throws IOException {
+
+		int b = scanner.peek();
+
+		if (b == 0xEF) {
+			// UTF-8 byte order mark
+			boolean isByteOrderMark = scanner.read() == 0xEF && scanner.read() == 0xBB && scanner.read() == 0xBF;
+			scanner.markDocumentStart();
+
+			return isByteOrderMark;
+		}
+
+		// Anything else than a byte order mark-less UTF-8 or US-ASCII document starts with a non-ASCII byte
+		return b == -1 || b < 0x80 && b != 0;
+	}
+
+	private boolean readMarkup(long start, int line, int column) throws IOException {
+
+		int b = scanner.read();
+
+		switch (b) {
+			case '/':
+				return readEndTag();
+			case '!':
+				return readDeclaration();
+			case '?':
+				return readProcessingInstruction(start);
+			case -1:
+				return false;
+			default:
+				return readStartTag(b, start, line, column);
+		}
+	}
+
+	private boolean readStartTag(int firstByte, long start, int line, int column) throws IOException {
+
+		StringBuilder name = new StringBuilder().append((char) firstByte);
+
+		int b;
+		while ((b = scanner.read()) != -1 && !isWhitespace(b) && b != '/' && b != '>') {
+			name.append((char) b);
+		}
+
+		// Skip the attributes
+		int previous = b;
+		while (b != '>') {
+
+			if (b == -1) {
+				return false;
+			}
+
+			if (b == '"' || b == '\'') {
+				if (!scanner.skipPast(new byte[] { (byte) b })) {
+					return false;
+				}
+			}
+
+			previous = b;
+			b = scanner.read();
+		}
+
+		boolean isEmptyElement = previous == '/';
+
+		Element parent = elements.peek();
+		Element element = new Element(name.toString(), parent);
+
+		if (!isInChunk && isFolder(element)) {
+
+			if (chunk == null || !isChunkExtensible || chunkParent != parent || chunk.getLength() >= chunkSize) {
+				closeChunk();
+				chunk = new ArchiveStructureChunk(start, line, column);
+				chunkParent = parent;
+			}
+
+			isInChunk = true;
+
+		} else if (!isInChunk) {
+			isChunkExtensible = false;
+		}
+
+		if (isEmptyElement) {
+			endElement(element);
+		} else {
+			elements.push(element);
+		}
+
+		return true;
+	}
+
+	private boolean readEndTag() throws IOException {
+
+		StringBuilder name = new StringBuilder();
+
+		int b;
+		while ((b = scanner.read()) != -1 && !isWhitespace(b) && b != '>') {
+			name.append((char) b);
+		}
+
+		if (b != '>' && !scanner.skipPast(new byte[] { '>' })) {
+			return false;
+		}
+
+		Element element = elements.poll();
+
+		if (element == null || !element.name.equals(name.toString())) {
+			// Mismatched end tag
+			return false;
+		}
+
+		endElement(element);
+
+		return true;
+	}
+
+	private void endElement(Element element) {
+
+		if (isInChunk && element.parent == chunkParent) {
+			// End of a top-level mappe
+			chunk.setEnd(scanner.getPosition(), scanner.getLine(), scanner.getColumn());
+			isInChunk = false;
+			isChunkExtensible = true;
+
+		} else if (!isInChunk) {
+			isChunkExtensible = false;
+		}
+	}
+
+	private boolean readDeclaration() throws IOException {
+
+		if (!isInChunk) {
+			isChunkExtensible = false;
+		}
+
+		int b = scanner.read();
+
+		if (b == '-') {
+			// Comment
+			return scanner.read() == '-' && scanner.skipPast(COMMENT_END);
+		}
+
+		if (b == '[') {
+			// Character data
+			for (byte expected : CDATA_START) {
+				if (scanner.read() != expected) {
+					return false;
+				}
+			}
+			return scanner.skipPast(CDATA_END);
+		}
+
+		// Document type declarations are not supported
+		return false;
+	}
+
+	private boolean readProcessingInstruction(long start) throws IOException {
+
+		if (!isInChunk) {
+			isChunkExtensible = false;
+		}
+
+		StringBuilder content = new StringBuilder();
+
+		int b;
+		int previous = -1;
+		while ((b = scanner.read()) != -1 && !(previous == '?' && b == '>')) {
+			content.append((char) b);
+			previous = b;
+		}
+
+		if (b == -1) {
+			return false;
+		}
+
+		if (start == scanner.getDocumentStart() && content.toString().matches("(?s)xml(\\s.*)?\\?")) {
+			return isSupportedXmlDeclaration(content.toString());
+		}
+
+		return true;
+	}
+
+	private static boolean isSupportedXmlDeclaration(String declaration) {
+
+		Matcher version = VERSION_PATTERN.matcher(declaration);
+		if (!version.find() || !version.group(1).equals("1.0")) {
+			return false;
+		}
+
+		Matcher encoding = ENCODING_PATTERN.matcher(declaration);
+		if (!encoding.find()) {
+			return true;
+		}
+
+		String name = encoding.group(1);
+		return name.equalsIgnoreCase("UTF-8") || name.equalsIgnoreCase("US-ASCII") || name.equalsIgnoreCase("ASCII");
+	}
+
+	private boolean isFolder(Element element) {
+
+		if (!element.name.equalsIgnoreCase(FOLDER) || element.parent == null || element.parent.isNonSplittable) {
+			return false;
+		}
+
+		for (String parentName : FOLDER_PARENTS) {
+			if (element.parent.name.equalsIgnoreCase(parentName)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private void closeChunk() {
+
+		if (chunk != null) {
+			chunks.add(chunk);
+			chunk = null;
+		}
+	}
+
+	private static boolean isWhitespace(int b) {
+
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+	}
+
+	private static final class Element {
+
+		private final String name;
+
+		private final Element parent;
+
+		private final boolean isNonSplittable;
+
+		private Element(String name, Element parent) {
+
+			this.name = name;
+			this.parent = parent;
+
+			boolean isNonSplittableElement = false;
+			for (String ancestorName : NON_SPLITTABLE_ANCESTORS) {
+				isNonSplittableElement |= name.equalsIgnoreCase(ancestorName);
+			}
+
+			this.isNonSplittable = isNonSplittableElement || parent != null && parent.isNonSplittable;
+		}
+	}
+
+	/**
+	 * A buffered byte reader that keeps track of the position, line and column (in characters) of the next byte.
+	 */
+	private static final class Scanner {
+
+		private static final int BUFFER_SIZE = 64 * 1024;
+
+		private final InputStream is;
+
+		private final byte[] buffer = new byte[BUFFER_SIZE];
+		private int bufferLength = 0;
+		private int bufferPosition = 0;
+
+		private long position = 0;
+		private long documentStart = 0;
+		private int line = 1;
+		private int column = 1;
+
+		private Scanner(InputStream is) {
+
+			this.is = is;
+		}
+
+		private long getPosition() {
+
+			return position;
+		}
+
+		private long getDocumentStart() {
+
+			return documentStart;
+		}
+
+		private int getLine() {
+
+			return line;
+		}
+
+		private int getColumn() {
+
+			return column;
+		}
+
+		/**
+		 * Marks the current position as the start of the document, i.e. the position after the byte order mark.
+		 */
+		private void markDocumentStart() {
+
+			documentStart = position;
+			column = 1;
+		}
+
+		private int peek() throws IOException {
+
+			if (bufferPosition == bufferLength && !fill()) {
+				return -1;
+			}
+
+			return buffer[bufferPosition] & 0xFF;
+		}
+
+		private int read() throws IOException {
+
+			int b = peek();
+
+			if (b == -1) {
+				return -1;
+			}
+
+			bufferPosition++;
+			position++;
+
+			if (b == '\n') {
+				line++;
+				column = 1;
+			} else if ((b & 0xC0) != 0x80) {
+				// Continuation bytes of multi-byte UTF-8 sequences do not start a new character
+				column++;
+			}
+
+			return b;
+		}
+
+		/**
+		 * Reads past the next occurrence of the specified sequence of bytes.
+		 *
+		 * @return <b>false</b> if the end of the stream was reached before the sequence occurred
+		 */
+		private boolean skipPast(byte[] sequence) throws IOException {
+
+			// The most recently read bytes, compared to the sequence on every read byte
+			int[] window = new int[sequence.length];
+			long count = 0;
+			int b;
+
+			while ((b = read()) != -1) {
+
+				window[(int) (count++ % window.length)] = b;
+
+				if (count >= window.length && endsWith(window, count, sequence)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		private static boolean endsWith(int[] window, long count, byte[] sequence) {
+
+			for (int i = 0; i < sequence.length; i++) {
+				if (window[(int) ((count - sequence.length + i) % window.length)] != (sequence[i] & 0xFF)) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		private boolean fill() throws IOException {
+
+			bufferLength = is.read(buffer, 0, buffer.length);
+			bufferPosition = 0;
+
+			return bufferLength > 0;
+		}
+	}
+}
@@ -18,36 +18,70 @@
 package com.documaster.validator.validation.noark5.parsers;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Map;
 
 import com.documaster.validator.storage.core.Storage;
 import com.documaster.validator.storage.model.Item;
 import com.documaster.validator.storage.model.ItemDef;
 import com.documaster.validator.validation.noark5.provider.ValidationGroup;
+import com.documaster.validator.validation.utils.ChecksumInputStream;
 import org.apache.commons.lang.Validate;
 import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
 
+/**
+ * A handler of the XML files of a {@link ValidationGroup} that creates an {@link Item} for every element that has an
+ * {@link ItemDef} and writes it to the {@link Storage} once the element is closed.
+ * <p/>
+ * A single handler parses the whole file. The elements with an {@link ItemDef} that enclose the current element are
+ * tracked in a stack of {@link Frame}s, which are reused by the elements of the same depth.
+ * <p/>
+ * The shape of the file is recorded in the handler's {@link ParseStatistics} while it is parsed.
+ */
 public class BaseHandler extends DefaultHandler {
 
+	private static final int INITIAL_DEPTH = 16;
+
 	private File xmlFile;
 
 	private XMLReader reader;
 
 	private Map<String, ItemDef> itemDefs;
 
-	private Item item;
+	private ElementDispatchTable dispatchTable;
 
 	private ValidationGroup validationGroup;
 
-	private BaseHandler parentHandler;
+	/**
+	 * The frames of the elements enclosing the current element; the frame at index 0 has no {@link Item}
+	 */
+	private Frame[] frames = new Frame[INITIAL_DEPTH];
+	private int depth = 0;
+
+	private String xmlFileChecksum;
 
-	StringBuilder characters = new StringBuilder();
+	private final ParseStatistics statistics = new ParseStatistics();
 
 	BaseHandler(File xmlFile, XMLReader reader, Map<String, ItemDef> itemDefs, ValidationGroup validationGroup) {
 
+		this(xmlFile, reader, itemDefs, validationGroup, null);
+	}
+
+	/**
+	 * Creates a root handler that dispatches elements with the specified {@link ElementDispatchTable}.
+	 *
+	 * @param dispatchTable
+	 * 		The {@link ElementDispatchTable} of the validation group or null if the handler should create its own
+	 */
+	BaseHandler(
+			File xmlFile, XMLReader reader, Map<String, ItemDef> itemDefs, ValidationGroup validationGroup,
+			ElementDispatchTable dispatchTable) {
+
 		Validate.isTrue(xmlFile.isFile());
 		Validate.notNull(reader, "The content reader cannot be null");
 		Validate.notNull(itemDefs, "The map containing item definitions cannot be null");
@@ -57,19 +91,11 @@ public class BaseHandler extends DefaultHandler {
 		this.reader = reader;
 		this.itemDefs = itemDefs;
 		this.validationGroup = validationGroup;
-	}
+		this.dispatchTable = dispatchTable != null
+				? dispatchTable
+				: new ElementDispatchTable(itemDefs, validationGroup);
 
-	BaseHandler(BaseHandler parentHandler, ItemDef itemDef, ValidationGroup validationGroup) {
-
-		this(
-				parentHandler.getXMLFile(), parentHandler.getReader(), parentHandler.getItemDefs(),
-				validationGroup);
-
-		Validate.notNull(parentHandler, "The parent handler cannot be null");
-		Validate.notNull(itemDef, "The associated item definition cannot be null");
-
-		this.parentHandler = parentHandler;
-		this.item = new Item(itemDef);
+		frames[0] = createFrame();
 	}
 
 	File getXMLFile() {
@@ -87,9 +113,35 @@ public class BaseHandler extends DefaultHandler {
 		return itemDefs;
 	}
 
+	ElementDispatchTable getDispatchTable() {
+
+		return dispatchTable;
+	}
+
+	/**
+	 * Retrieves the {@link Frame} of the innermost element with an {@link ItemDef} that encloses the current element.
+	 */
+	Frame getFrame() {
+
+		return frames[depth];
+	}
+
+	/**
+	 * Retrieves the {@link Item} of the current {@link Frame}.
+	 *
+	 * @return The {@link Item} or null if the current element is not enclosed by an element with an {@link ItemDef}
+	 */
 	Item getItem() {
 
-		return item;
+		return frames[depth].item;
+	}
+
+	/**
+	 * Retrieves the number of elements with an {@link ItemDef} that enclose the current element.
+	 */
+	int getDepth() {
+
+		return depth;
 	}
 
 	public ValidationGroup getValidationGroup() {
@@ -97,81 +149,210 @@ public class BaseHandler extends DefaultHandler {
 		return validationGroup;
 	}
 
-	BaseHandler getParentHandler() {
+	/**
+	 * Retrieves the {@link ParseStatistics} of the file, which are complete once the file has been parsed.
+	 */
+	public ParseStatistics getStatistics() {
 
-		return parentHandler;
+		return statistics;
 	}
 
 	/**
-	 * Sets the XML context to the specified {@link BaseHandler} class and type.
+	 * Parses the XML file of the handler with the handler's reader.
 	 *
-	 * @param handler
-	 * 		The {@link BaseHandler} that should be used
-	 * @param type
-	 * 		The type of the entry
+	 * @param threads
+	 * 		The maximum number of threads the file may be parsed with
 	 */
-	void setContentHandler(BaseHandler handler, String type) throws SAXException {
+	public void parse(int threads) throws IOException, SAXException {
 
-		Item childItem = handler.getItem();
-		childItem.setType(type != null ? type : handler.getItem().getItemDef().getName());
+		try (ChecksumInputStream is = new ChecksumInputStream(xmlFile)) {
+			reader.parse(new InputSource(is));
+			xmlFileChecksum = is.getChecksum();
+		}
+	}
 
-		reader.setContentHandler(handler);
+	/**
+	 * Retrieves the SHA-256 checksum of the XML file that was calculated while the file was parsed.
+	 *
+	 * @return The checksum or null if the file has not been parsed completely with {@link #parse(int)}
+	 */
+	public String getXMLFileChecksum() {
+
+		return xmlFileChecksum;
+	}
+
+	void setXMLFileChecksum(String xmlFileChecksum) {
+
+		this.xmlFileChecksum = xmlFileChecksum;
+	}
+
+	/**
+	 * Creates a {@link Frame} of this handler. Invoked once per depth, since the frames are reused.
+	 */
+	Frame createFrame() {
+
+		return new Frame();
 	}
 
 	/**
-	 * Releases the current XML context by returning control to the parent's XML context.
+	 * Creates the {@link Item} of an element enclosed by the current {@link Frame}.
 	 */
-	void releaseContentHandler() {
+	Item createChildItem(ItemDef itemDef) {
+
+		return new Item(itemDef);
+	}
 
-		if (parentHandler != null) {
-			reader.setContentHandler(parentHandler);
+	/**
+	 * Retrieves the byte offset of the current tag in the XML file.
+	 *
+	 * @return The offset or null if the reader does not report byte offsets (see {@link OffsetLocator})
+	 */
+	Long getTagStart() {
+
+		return reader instanceof OffsetLocator ? toFileOffset(((OffsetLocator) reader).getTagStart()) : null;
+	}
+
+	/**
+	 * Retrieves the byte offset following the current tag in the XML file.
+	 *
+	 * @return The offset or null if the reader does not report byte offsets (see {@link OffsetLocator})
+	 */
+	Long getTagEnd() {
+
+		return reader instanceof OffsetLocator ? toFileOffset(((OffsetLocator) reader).getTagEnd()) : null;
+	}
+
+	/**
+	 * Translates a byte offset in the stream the reader parses to the byte offset in the XML file.
+	 *
+	 * @return The offset in the file or null if the offset is not known
+	 */
+	Long toFileOffset(long offset) {
+
+		return offset != -1 ? offset : null;
+	}
+
+	/**
+	 * Enters the element of the specified {@link Item}, i.e. the element of the current start tag.
+	 *
+	 * @return The {@link Frame} of the element, which becomes the current one
+	 */
+	Frame pushFrame(Item item) {
+
+		item.setStartOffset(getTagStart());
+
+		if (++depth == frames.length) {
+			frames = Arrays.copyOf(frames, depth * 2);
+		}
+		if (frames[depth] == null) {
+			frames[depth] = createFrame();
 		}
+
+		Frame frame = frames[depth];
+		frame.reset(item);
+		frame.statistics = statistics.get(item.getItemDef());
+		frame.statistics.addElement(depth);
+
+		return frame;
+	}
+
+	/**
+	 * Leaves the element of the current {@link Frame}, i.e. the element of the current end tag.
+	 */
+	void popFrame() {
+
+		if (depth > 0) {
+			frames[depth--].reset(null);
+		}
+	}
+
+	/**
+	 * Adds a field value to the {@link Item} of the current {@link Frame}.
+	 *
+	 * @param name
+	 * 		The lowercase name of the field, e.g. {@link ElementDispatchTable.Element#getName()}
+	 */
+	void addValue(String name, String value) {
+
+		Frame frame = frames[depth];
+
+		frame.item.addNormalized(name, value);
+		frame.statistics.addValue(value);
 	}
 
 	@Override
 	public void characters(char buf[], int offset, int length) throws SAXException {
 
-		characters.append(new String(buf, offset, length));
+		frames[depth].characters.append(buf, offset, length);
 	}
 
 	/**
-	 * Switches the content handler if an {@link ItemDef} for the specified element name exists.
+	 * Enters an element with an {@link ItemDef}.
 	 */
 	@Override
 	public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
 
-		characters.setLength(0);
+		frames[depth].characters.setLength(0);
 
-		String itemDefName = getItemDefNameForElement(qName.toLowerCase());
+		ItemDef itemDef = dispatchTable.get(qName).getItemDef();
 
-		if (getItemDefs().containsKey(itemDefName)) {
-			setContentHandler(new BaseHandler(this, getItemDefs().get(itemDefName), validationGroup), null);
+		if (itemDef != null) {
+			Item item = createChildItem(itemDef);
+			item.setType(itemDef.getName());
+			pushFrame(item);
 		}
 	}
 
 	/**
-	 * Releases the content handler if the element's name is the same as the name of the {@link ItemDef} corresponding
-	 * to this handler; updates the corresponding {@link Item} if not.
+	 * Leaves the current {@link Frame} if the element's name is the same as the name of the {@link ItemDef} of its
+	 * {@link Item}; updates the {@link Item} if not.
 	 */
 	@Override
 	public void endElement(String uri, String localName, String qName) throws SAXException {
 
-		String elementName = qName.toLowerCase();
+		ElementDispatchTable.Element element = dispatchTable.get(qName);
 
 		// Inner value
-		if (!getItemDefs().containsKey(getItemDefNameForElement(elementName))) {
-			getItem().add(elementName, characters.toString().trim());
+		if (element.getItemDef() == null) {
+			addValue(element.getName(), frames[depth].characters.toString().trim());
 		}
 
 		// Encountered the element closing tag
-		if (elementName.toLowerCase().equals(getItem().getItemDef().getName())) {
+		if (element.getItemDef() == getItem().getItemDef()) {
+			getItem().setEndOffset(getTagEnd());
 			Storage.get().write(getItem());
-			releaseContentHandler();
+			popFrame();
 		}
 	}
 
-	String getItemDefNameForElement(String elementName) {
+	/**
+	 * The state of an element with an {@link ItemDef} while its content is parsed.
+	 */
+	static class Frame {
+
+		private Item item;
+
+		private ParseStatistics.ItemDefStatistics statistics;
 
-		return getValidationGroup().getName() + "." + elementName.toLowerCase();
+		/**
+		 * The character data since the last start tag in the element, excluding the content of the enclosed elements
+		 * with an {@link ItemDef}
+		 */
+		final StringBuilder characters = new StringBuilder();
+
+		Item getItem() {
+
+			return item;
+		}
+
+		/**
+		 * Prepares the frame for the element of the specified {@link Item}.
+		 */
+		void reset(Item item) {
+
+			this.item = item;
+			this.statistics = null;
+			characters.setLength(0);
+		}
 	}
 }
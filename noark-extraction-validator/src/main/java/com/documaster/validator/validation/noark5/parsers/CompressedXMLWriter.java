@@ -0,0 +1,187 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.parsers;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+import com.documaster.validator.storage.model.Field;
+import org.xml.sax.Attributes;
+
+/**
+ * Serializes the SAX events of an XML element and its content into a deflated (zlib) UTF-8 XML document, e.g. the
+ * business-specific metadata that is stored in {@link Field#BUSINESS_SPECIFIC_METADATA}.
+ * <p/>
+ * The element is written as reported by a SAX parser that is not namespace-aware, i.e. with the qualified names and
+ * the namespace declarations of the element and its content only. The writer and its buffers are reused for every
+ * element it writes.
+ * <p/>
+ * The native compressor is created when the first element is finished and must be released with {@link #end()}.
+ */
+final class CompressedXMLWriter {
+
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	private final StringBuilder xml = new StringBuilder();
+
+	private Deflater deflater;
+
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+
+	private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+	private int depth = 0;
+
+	private boolean isStartTagOpen = false;
+
+	/**
+	 * Checks whether an element is being written.
+	 */
+	boolean isWriting() {
+
+		return depth > 0;
+	}
+
+	void startElement(String qName, Attributes attributes) {
+
+		closeStartTag();
+
+		xml.append('<').append(qName);
+		for (int i = 0; i < attributes.getLength(); i++) {
+			xml.append(' ').append(attributes.getQName(i)).append("=\"");
+			escape(attributes.getValue(i), true);
+			xml.append('"');
+		}
+
+		isStartTagOpen = true;
+		depth++;
+	}
+
+	void characters(char[] ch, int start, int length) {
+
+		if (length == 0) {
+			return;
+		}
+
+		closeStartTag();
+
+		for (int i = start; i < start + length; i++) {
+			escape(ch[i], false);
+		}
+	}
+
+	/**
+	 * Writes the end tag of the current element.
+	 *
+	 * @return Whether the element that was started first has been closed, i.e. the document can be retrieved with
+	 * {@link #finish()}
+	 */
+	boolean endElement(String qName) {
+
+		if (isStartTagOpen) {
+			xml.append("/>");
+			isStartTagOpen = false;
+		} else {
+			xml.append("</").append(qName).append('>');
+		}
+
+		return --depth == 0;
+	}
+
+	/**
+	 * Retrieves the compressed document and resets the writer.
+	 */
+	byte[] finish() {
+
+		byte[] bytes = xml.toString().getBytes(StandardCharsets.UTF_8);
+		xml.setLength(0);
+		depth = 0;
+		isStartTagOpen = false;
+
+		if (deflater == null) {
+			deflater = new Deflater(Deflater.BEST_SPEED);
+		} else {
+			deflater.reset();
+		}
+		deflater.setInput(bytes);
+		deflater.finish();
+
+		compressed.reset();
+		while (!deflater.finished()) {
+			compressed.write(buffer, 0, deflater.deflate(buffer));
+		}
+
+		return compressed.toByteArray();
+	}
+
+	/**
+	 * Releases the native compressor. The writer can still be used; a new compressor is created when needed.
+	 */
+	void end() {
+
+		if (deflater != null) {
+			deflater.end();
+			deflater = null;
+		}
+	}
+
+	private void closeStartTag() {
+
+		if (isStartTagOpen) {
+			xml.append('>');
+			isStartTagOpen = false;
+		}
+	}
+
+	private void escape(String value, boolean isAttribute) {
+
+		for (int i = 0; i < value.length(); i++) {
+			escape(value.charAt(i), isAttribute);
+		}
+	}
+
+	private void escape(char c, boolean isAttribute) {
+
+		switch (c) {
+			case '<':
+				xml.append("&lt;");
+				break;
+			case '>':
+				xml.append("&gt;");
+				break;
+			case '&':
+				xml.append("&amp;");
+				break;
+			case '"':
+				xml.append(isAttribute ? "&quot;" : "\"");
+				break;
+			case '\r':
+				xml.append("&#13;");
+				break;
+			case '\n':
+				xml.append(isAttribute ? "&#10;" : "\n");
+				break;
+			case '\t':
+				xml.append(isAttribute ? "&#9;" : "\t");
+				break;
+			default:
+				xml.append(c);
+		}
+	}
+}
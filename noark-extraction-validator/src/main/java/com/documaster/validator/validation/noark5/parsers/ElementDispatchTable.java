@@ -0,0 +1,193 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.parsers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.documaster.validator.storage.model.ItemDef;
+import com.documaster.validator.validation.noark5.provider.ValidationGroup;
+
+/**
+ * Maps the XML elements of the files of a {@link ValidationGroup} to the {@link ItemDef}s of the group.
+ * <p/>
+ * The elements are keyed by their qualified names exactly as reported by the parser, so that dispatching an element
+ * requires neither lowercasing its name nor building the full name of its {@link ItemDef}. The lowercase element and
+ * reference names are interned, so that they can be added to items as is and match the field names of the storage
+ * by identity.
+ * <p/>
+ * The table also holds the reference propagation plan of the group: every reference field (_ref_*) that an
+ * {@link ItemDef} of the group can have is assigned an index, so that the reference values visible at an element can
+ * be carried down the element tree in an array, and every {@link ItemDef} is mapped to the indexes of the references
+ * its items inherit from their parent elements.
+ * <p/>
+ * A table can be shared by handlers on different threads.
+ */
+final class ElementDispatchTable {
+
+	private final Map<String, ItemDef> itemDefsByElementName = new HashMap<>();
+
+	private final Map<String, Integer> referenceIndexes = new HashMap<>();
+
+	private final List<String> referenceNames = new ArrayList<>();
+
+	private final Map<ItemDef, Integer> itemDefReferenceIndexes = new IdentityHashMap<>();
+
+	private final Map<ItemDef, int[]> inheritedReferenceIndexes = new IdentityHashMap<>();
+
+	private final Map<String, Element> elements = new ConcurrentHashMap<>();
+
+	ElementDispatchTable(Map<String, ItemDef> itemDefs, ValidationGroup validationGroup) {
+
+		for (ItemDef itemDef : itemDefs.values()) {
+
+			if (!itemDef.getGroupName().equals(validationGroup.getName())) {
+				continue;
+			}
+
+			itemDefsByElementName.put(itemDef.getName(), itemDef);
+			itemDefReferenceIndexes.put(itemDef, getOrCreateReferenceIndex(itemDef.getReferenceName()));
+
+			// The references to related item definitions, which are resolved from the parent elements
+			Set<Integer> references = new LinkedHashSet<>();
+			for (ItemDef relatedItemDef : itemDefs.values()) {
+				if (itemDef.hasFieldWithName(relatedItemDef.getReferenceName())) {
+					references.add(getOrCreateReferenceIndex(relatedItemDef.getReferenceName()));
+				}
+			}
+
+			int[] indexes = new int[references.size()];
+			int i = 0;
+			for (Integer index : references) {
+				indexes[i++] = index;
+			}
+			inheritedReferenceIndexes.put(itemDef, indexes);
+		}
+	}
+
+	private int getOrCreateReferenceIndex(String referenceName) {
+
+		Integer index = referenceIndexes.get(referenceName);
+
+		if (index == null) {
+			index = referenceNames.size();
+			referenceIndexes.put(referenceName, index);
+			referenceNames.add(referenceName.intern());
+		}
+
+		return index;
+	}
+
+	/**
+	 * Retrieves the {@link Element} with the specified qualified name.
+	 */
+	Element get(String qName) {
+
+		Element element = elements.get(qName);
+
+		if (element == null) {
+			String name = qName.toLowerCase().intern();
+			element = new Element(name, itemDefsByElementName.get(name));
+			elements.put(qName, element);
+		}
+
+		return element;
+	}
+
+	/**
+	 * Retrieves the number of reference fields the {@link ItemDef}s of the group can have.
+	 */
+	int getReferenceCount() {
+
+		return referenceNames.size();
+	}
+
+	/**
+	 * Retrieves the index of the field that refers to the specified {@link ItemDef} of the group.
+	 */
+	int getReferenceIndex(ItemDef itemDef) {
+
+		return itemDefReferenceIndexes.get(itemDef);
+	}
+
+	/**
+	 * Retrieves the index of the specified reference field.
+	 *
+	 * @return The index or -1 if none of the {@link ItemDef}s of the group can have the field
+	 */
+	int getReferenceIndex(String referenceName) {
+
+		Integer index = referenceIndexes.get(referenceName);
+
+		return index != null ? index : -1;
+	}
+
+	String getReferenceName(int referenceIndex) {
+
+		return referenceNames.get(referenceIndex);
+	}
+
+	/**
+	 * Retrieves the indexes of the reference fields the items of the specified {@link ItemDef} of the group inherit
+	 * from their parent elements.
+	 */
+	int[] getInheritedReferences(ItemDef itemDef) {
+
+		return inheritedReferenceIndexes.get(itemDef);
+	}
+
+	/**
+	 * An XML element of the files of the group.
+	 */
+	static final class Element {
+
+		private final String name;
+
+		private final ItemDef itemDef;
+
+		private Element(String name, ItemDef itemDef) {
+
+			this.name = name;
+			this.itemDef = itemDef;
+		}
+
+		/**
+		 * Retrieves the lowercase name of the element.
+		 */
+		String getName() {
+
+			return name;
+		}
+
+		/**
+		 * Retrieves the {@link ItemDef} of the element.
+		 *
+		 * @return The {@link ItemDef} or null if the element is a field of its parent element's {@link ItemDef}
+		 */
+		ItemDef getItemDef() {
+
+			return itemDef;
+		}
+	}
+}
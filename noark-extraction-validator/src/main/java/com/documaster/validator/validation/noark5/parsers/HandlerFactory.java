@@ -23,6 +23,7 @@ import java.util.Map;
 import com.documaster.validator.exceptions.ConversionException;
 import com.documaster.validator.storage.model.ItemDef;
 import com.documaster.validator.validation.noark5.provider.ValidationGroup;
+import com.documaster.validator.validation.noark5.source.PackageSource;
 import org.xml.sax.XMLReader;
 
 public class HandlerFactory {
@@ -31,11 +32,18 @@ public class HandlerFactory {
 		// Prevent instantiation
 	}
 
-	public static BaseHandler createHandler(File xmlFile, XMLReader reader, Map<String, ItemDef> itemDefs) {
+	/**
+	 * Creates the handler of the specified XML file of an extraction package.
+	 *
+	 * @param packageSource
+	 * 		The {@link PackageSource} of the extraction package, which provides the documents of arkivstruktur.xml
+	 */
+	public static BaseHandler createHandler(
+			File xmlFile, XMLReader reader, Map<String, ItemDef> itemDefs, PackageSource packageSource) {
 
 		switch (xmlFile.getName()) {
 			case "arkivstruktur.xml":
-				return new ArchiveStructureHandler(xmlFile, reader, itemDefs);
+				return new ArchiveStructureHandler(xmlFile, reader, itemDefs, packageSource);
 			case "arkivuttrekk.xml":
 				return new TransferExportsHandler(xmlFile, reader, itemDefs);
 			case "endringslogg.xml":
@@ -0,0 +1,43 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.parsers;
+
+import org.xml.sax.Locator;
+
+/**
+ * A {@link Locator} that also reports the byte offsets of the tag an event was reported for.
+ * <p/>
+ * The offsets are valid during the startElement and endElement events only.
+ */
+interface OffsetLocator extends Locator {
+
+	/**
+	 * Retrieves the offset of the first byte (i.e. '&lt;') of the current start or end tag in the stream.
+	 *
+	 * @return The offset or -1 if it is not known
+	 */
+	long getTagStart();
+
+	/**
+	 * Retrieves the offset of the byte following the last byte (i.e. '&gt;') of the current start or end tag in the
+	 * stream.
+	 *
+	 * @return The offset or -1 if it is not known
+	 */
+	long getTagEnd();
+}
@@ -0,0 +1,178 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.parsers;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.documaster.validator.storage.model.ItemDef;
+
+/**
+ * The shape of a parsed XML file, i.e. counters of the elements of every {@link ItemDef} that are updated by a
+ * {@link BaseHandler} while it parses the file.
+ * <p/>
+ * The counters are primitives that are looked up once per element, so collecting them adds no measurable cost to the
+ * parse. They are not thread-safe; the statistics of a file that is parsed concurrently are collected per chunk and
+ * merged in document order.
+ */
+public final class ParseStatistics {
+
+	private final Map<ItemDef, ItemDefStatistics> statistics = new IdentityHashMap<>();
+
+	/**
+	 * Retrieves the counters of the specified {@link ItemDef}, creating them if none of its elements was encountered
+	 * yet.
+	 */
+	ItemDefStatistics get(ItemDef itemDef) {
+
+		ItemDefStatistics itemDefStatistics = statistics.get(itemDef);
+
+		if (itemDefStatistics == null) {
+			itemDefStatistics = new ItemDefStatistics(itemDef);
+			statistics.put(itemDef, itemDefStatistics);
+		}
+
+		return itemDefStatistics;
+	}
+
+	/**
+	 * Adds the counters of the specified statistics to these ones.
+	 *
+	 * @param depthOffset
+	 * 		The depth of the element enclosing the content the specified statistics were collected for
+	 */
+	void merge(ParseStatistics other, int depthOffset) {
+
+		for (ItemDefStatistics otherStatistics : other.statistics.values()) {
+
+			ItemDefStatistics itemDefStatistics = get(otherStatistics.itemDef);
+
+			itemDefStatistics.elementCount += otherStatistics.elementCount;
+			itemDefStatistics.maxDepth = Math.max(itemDefStatistics.maxDepth, otherStatistics.maxDepth + depthOffset);
+			itemDefStatistics.characterCount += otherStatistics.characterCount;
+			itemDefStatistics.maxFieldLength =
+					Math.max(itemDefStatistics.maxFieldLength, otherStatistics.maxFieldLength);
+		}
+	}
+
+	/**
+	 * Retrieves the counters of the {@link ItemDef}s whose elements were encountered, ordered by the full name of the
+	 * {@link ItemDef}.
+	 */
+	public List<ItemDefStatistics> getItemDefStatistics() {
+
+		List<ItemDefStatistics> itemDefStatistics = new ArrayList<>(statistics.values());
+		itemDefStatistics.sort(Comparator.comparing(s -> s.getItemDef().getFullName()));
+
+		return itemDefStatistics;
+	}
+
+	public long getElementCount() {
+
+		long elementCount = 0;
+
+		for (ItemDefStatistics itemDefStatistics : statistics.values()) {
+			elementCount += itemDefStatistics.elementCount;
+		}
+
+		return elementCount;
+	}
+
+	/**
+	 * The counters of the elements of an {@link ItemDef}.
+	 */
+	public static final class ItemDefStatistics {
+
+		private final ItemDef itemDef;
+
+		private long elementCount = 0;
+
+		private int maxDepth = 0;
+
+		private long characterCount = 0;
+
+		private int maxFieldLength = 0;
+
+		private ItemDefStatistics(ItemDef itemDef) {
+
+			this.itemDef = itemDef;
+		}
+
+		/**
+		 * Counts an element at the specified depth.
+		 */
+		void addElement(int depth) {
+
+			elementCount++;
+			if (depth > maxDepth) {
+				maxDepth = depth;
+			}
+		}
+
+		/**
+		 * Counts a field value of an element.
+		 */
+		void addValue(String value) {
+
+			int length = value.length();
+
+			characterCount += length;
+			if (length > maxFieldLength) {
+				maxFieldLength = length;
+			}
+		}
+
+		public ItemDef getItemDef() {
+
+			return itemDef;
+		}
+
+		public long getElementCount() {
+
+			return elementCount;
+		}
+
+		/**
+		 * Retrieves the maximum number of elements with an {@link ItemDef} that enclose an element, including the
+		 * element itself, e.g. 1 for the root element of a file.
+		 */
+		public int getMaxDepth() {
+
+			return maxDepth;
+		}
+
+		/**
+		 * Retrieves the total number of characters in the field values of the elements.
+		 */
+		public long getCharacterCount() {
+
+			return characterCount;
+		}
+
+		/**
+		 * Retrieves the number of characters in the longest field value of the elements.
+		 */
+		public int getMaxFieldLength() {
+
+			return maxFieldLength;
+		}
+	}
+}
@@ -0,0 +1,355 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.parsers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * An {@link XMLReader} that parses with an {@link XMLStreamReader} and reports the content as a SAX parser that is not
+ * namespace-aware does: elements and attributes are reported by their qualified names only, and namespace
+ * declarations are reported as attributes.
+ * <p/>
+ * The namespaces feature reflects whether the {@link XMLInputFactory} is namespace-aware, i.e. whether the parser
+ * requires namespace prefixes to be declared.
+ * <p/>
+ * The content handler is looked up on every event, so that handlers can switch the content handler while parsing.
+ */
+final class StaxXMLReader implements XMLReader, Locator {
+
+	private static final String NAMESPACES = "http://xml.org/sax/features/namespaces";
+	private static final String NAMESPACE_PREFIXES = "http://xml.org/sax/features/namespace-prefixes";
+
+	private static final String XMLNS = "xmlns";
+	private static final String CDATA = "CDATA";
+
+	private final XMLInputFactory inputFactory;
+
+	private final AttributesImpl attributes = new AttributesImpl();
+
+	private ContentHandler contentHandler;
+	private ErrorHandler errorHandler;
+	private DTDHandler dtdHandler;
+	private EntityResolver entityResolver;
+
+	private XMLStreamReader streamReader;
+
+	StaxXMLReader(XMLInputFactory inputFactory) {
+
+		this.inputFactory = inputFactory;
+	}
+
+	XMLInputFactory getInputFactory() {
+
+		return inputFactory;
+	}
+
+	@Override
+	public void parse(String systemId) throws IOException, SAXException {
+
+		parse(new InputSource(systemId));
+	}
+
+	@Override
+	public void parse(InputSource input) throws IOException, SAXException {
+
+		InputStream systemIdStream = null;
+
+		try {
+			if (input.getByteStream() == null && input.getCharacterStream() == null) {
+				systemIdStream = new URL(input.getSystemId()).openStream();
+				input = new InputSource(systemIdStream);
+			}
+
+			streamReader = createStreamReader(input);
+			parse();
+
+		} catch (XMLStreamException ex) {
+			throw fatalError(ex);
+
+		} catch (RuntimeException ex) {
+			// Parsers that read lazily (e.g. Woodstox) raise parse errors wrapped in runtime exceptions
+			if (ex.getCause() instanceof XMLStreamException) {
+				throw fatalError((XMLStreamException) ex.getCause());
+			}
+			throw ex;
+
+		} finally {
+			if (streamReader != null) {
+				try {
+					streamReader.close();
+				} catch (XMLStreamException ex) {
+					// The underlying input is closed by its owner
+				}
+				streamReader = null;
+			}
+			IOUtils.closeQuietly(systemIdStream);
+		}
+	}
+
+	private XMLStreamReader createStreamReader(InputSource input) throws XMLStreamException {
+
+		if (input.getCharacterStream() != null) {
+			return inputFactory.createXMLStreamReader(input.getSystemId(), input.getCharacterStream());
+		} else if (input.getEncoding() != null) {
+			return inputFactory.createXMLStreamReader(input.getByteStream(), input.getEncoding());
+		} else {
+			return inputFactory.createXMLStreamReader(input.getSystemId(), input.getByteStream());
+		}
+	}
+
+	private void parse() throws XMLStreamException, SAXException {
+
+		if (contentHandler != null) {
+			contentHandler.setDocumentLocator(this);
+			contentHandler.startDocument();
+		}
+
+		int depth = 0;
+
+		while (streamReader.hasNext()) {
+
+			int event = streamReader.next();
+			ContentHandler handler = contentHandler;
+
+			switch (event) {
+				case XMLStreamConstants.START_ELEMENT:
+					depth++;
+					if (handler != null) {
+						handler.startElement("", "", getQName(), getAttributes());
+					}
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					depth--;
+					if (handler != null) {
+						handler.endElement("", "", getQName());
+					}
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					// Whitespace outside of the root element is not content
+					if (handler != null && depth > 0) {
+						handler.characters(
+								streamReader.getTextCharacters(), streamReader.getTextStart(),
+								streamReader.getTextLength());
+					}
+					break;
+				case XMLStreamConstants.PROCESSING_INSTRUCTION:
+					if (handler != null) {
+						handler.processingInstruction(streamReader.getPITarget(), streamReader.getPIData());
+					}
+					break;
+				case XMLStreamConstants.ENTITY_REFERENCE:
+					if (handler != null) {
+						handler.skippedEntity(streamReader.getLocalName());
+					}
+					break;
+				default:
+					// Comments, DTDs and entity declarations are not reported
+					break;
+			}
+		}
+
+		if (contentHandler != null) {
+			contentHandler.endDocument();
+		}
+	}
+
+	private String getQName() {
+
+		return toQName(streamReader.getPrefix(), streamReader.getLocalName());
+	}
+
+	private AttributesImpl getAttributes() {
+
+		attributes.clear();
+
+		for (int i = 0; i < streamReader.getNamespaceCount(); i++) {
+			String prefix = streamReader.getNamespacePrefix(i);
+			attributes.addAttribute(
+					"", "", StringUtils.isEmpty(prefix) ? XMLNS : XMLNS + ":" + prefix, CDATA,
+					streamReader.getNamespaceURI(i));
+		}
+
+		for (int i = 0; i < streamReader.getAttributeCount(); i++) {
+			attributes.addAttribute(
+					"", "", toQName(streamReader.getAttributePrefix(i), streamReader.getAttributeLocalName(i)),
+					streamReader.getAttributeType(i), streamReader.getAttributeValue(i));
+		}
+
+		return attributes;
+	}
+
+	private static String toQName(String prefix, String localName) {
+
+		return StringUtils.isEmpty(prefix) ? localName : prefix + ":" + localName;
+	}
+
+	/**
+	 * Reports the specified exception to the error handler as a fatal error.
+	 *
+	 * @return The reported exception
+	 */
+	private SAXParseException fatalError(XMLStreamException ex) throws SAXException {
+
+		Location location = ex.getLocation();
+
+		SAXParseException parseException;
+
+		if (location != null) {
+			parseException = new SAXParseException(
+					ex.getMessage(), location.getPublicId(), location.getSystemId(), location.getLineNumber(),
+					location.getColumnNumber(), ex);
+		} else {
+			parseException = new SAXParseException(ex.getMessage(), this, ex);
+		}
+
+		if (errorHandler != null) {
+			errorHandler.fatalError(parseException);
+		}
+
+		return parseException;
+	}
+
+	@Override
+	public String getPublicId() {
+
+		return streamReader != null ? streamReader.getLocation().getPublicId() : null;
+	}
+
+	@Override
+	public String getSystemId() {
+
+		return streamReader != null ? streamReader.getLocation().getSystemId() : null;
+	}
+
+	@Override
+	public int getLineNumber() {
+
+		return streamReader != null ? streamReader.getLocation().getLineNumber() : -1;
+	}
+
+	@Override
+	public int getColumnNumber() {
+
+		return streamReader != null ? streamReader.getLocation().getColumnNumber() : -1;
+	}
+
+	@Override
+	public boolean getFeature(String name) throws SAXNotRecognizedException {
+
+		switch (name) {
+			case NAMESPACES:
+				return Boolean.TRUE.equals(inputFactory.getProperty(XMLInputFactory.IS_NAMESPACE_AWARE));
+			case NAMESPACE_PREFIXES:
+				return true;
+			default:
+				throw new SAXNotRecognizedException(name);
+		}
+	}
+
+	@Override
+	public void setFeature(String name, boolean value) throws SAXNotRecognizedException, SAXNotSupportedException {
+
+		if (getFeature(name) != value) {
+			throw new SAXNotSupportedException(name);
+		}
+	}
+
+	@Override
+	public Object getProperty(String name) throws SAXNotRecognizedException {
+
+		throw new SAXNotRecognizedException(name);
+	}
+
+	@Override
+	public void setProperty(String name, Object value) throws SAXNotRecognizedException {
+
+		throw new SAXNotRecognizedException(name);
+	}
+
+	@Override
+	public void setEntityResolver(EntityResolver resolver) {
+
+		this.entityResolver = resolver;
+	}
+
+	@Override
+	public EntityResolver getEntityResolver() {
+
+		return entityResolver;
+	}
+
+	@Override
+	public void setDTDHandler(DTDHandler handler) {
+
+		this.dtdHandler = handler;
+	}
+
+	@Override
+	public DTDHandler getDTDHandler() {
+
+		return dtdHandler;
+	}
+
+	@Override
+	public void setContentHandler(ContentHandler handler) {
+
+		this.contentHandler = handler;
+	}
+
+	@Override
+	public ContentHandler getContentHandler() {
+
+		return contentHandler;
+	}
+
+	@Override
+	public void setErrorHandler(ErrorHandler handler) {
+
+		this.errorHandler = handler;
+	}
+
+	@Override
+	public ErrorHandler getErrorHandler() {
+
+		return errorHandler;
+	}
+}
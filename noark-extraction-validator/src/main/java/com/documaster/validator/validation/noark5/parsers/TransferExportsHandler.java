@@ -18,13 +18,11 @@
 package com.documaster.validator.validation.noark5.parsers;
 
 import java.io.File;
-import java.util.HashMap;
 import java.util.Map;
 
 import com.documaster.validator.storage.model.Item;
 import com.documaster.validator.storage.model.ItemDef;
 import com.documaster.validator.validation.noark5.provider.ValidationGroup;
-import org.apache.commons.lang.NotImplementedException;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
@@ -39,53 +37,29 @@ class TransferExportsHandler extends BaseHandler {
 		super(xmlFile, reader, itemDefs, ValidationGroup.TRANSFER_EXPORTS);
 	}
 
-	private TransferExportsHandler(TransferExportsHandler parentHandler, ItemDef itemDef) {
-
-		super(parentHandler, itemDef, ValidationGroup.TRANSFER_EXPORTS);
-	}
-
 	@Override
 	public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
 
-		characters.setLength(0);
-		String elementName = qName.toLowerCase();
+		getFrame().characters.setLength(0);
+		ItemDef itemDef = getDispatchTable().get(qName).getItemDef();
 
-		if (getItemDefs().containsKey(getValidationGroup().getName() + "." + elementName)) {
+		if (itemDef != null) {
 
-			Map<String, String> attributeMap = new HashMap<>();
-
-			for (int i = 0; i < attributes.getLength(); i++) {
+			Item childItem = createChildItem(itemDef);
 
-				attributeMap.put(attributes.getQName(i).toLowerCase(), attributes.getValue(i));
+			if (getItem() != null) {
+				childItem.setParentId(getItem().getId());
 			}
 
-			setContentHandler(getItemDefs().get(getItemDefNameForElement(elementName)), attributeMap);
-		}
-	}
-
-	@Override
-	void setContentHandler(BaseHandler handler, String type) {
+			pushFrame(childItem);
 
-		throw new NotImplementedException(
-				"Use setContentHandler(ItemDef itemDef, Map<String, String> attributes) instead");
-	}
-
-	private void setContentHandler(ItemDef itemDef, Map<String, String> attributes) {
-
-		TransferExportsHandler childHandler = new TransferExportsHandler(this, itemDef);
-
-		Item childItem = childHandler.getItem();
+			for (int i = 0; i < attributes.getLength(); i++) {
 
-		for (String key : attributes.keySet()) {
-			if (childHandler.getItem().getItemDef().hasFieldWithName(key)) {
-				childItem.add(key, attributes.get(key));
+				String attributeName = attributes.getQName(i);
+				if (itemDef.hasFieldWithName(attributeName)) {
+					addValue(attributeName.toLowerCase(), attributes.getValue(i));
+				}
 			}
 		}
-
-		if (getItem() != null) {
-			childItem.setParentId(getItem().getId());
-		}
-
-		getReader().setContentHandler(childHandler);
 	}
 }
@@ -0,0 +1,248 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.parsers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Compares the throughput of the available {@link XMLParserType}s, so that the fastest parser of a host can be chosen.
+ * <p/>
+ * Parses an arkivstruktur.xml file with each parser and a handler that only consumes the reported content. If no file
+ * is specified, a synthetic file with the specified number of mappe elements is generated. The StAX implementation
+ * can be chosen with the javax.xml.stream.XMLInputFactory system property, e.g. to compare Woodstox and Aalto.
+ */
+public class XMLParserBenchmark {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(XMLParserBenchmark.class);
+
+	private static final int DEFAULT_FOLDERS = 20000;
+	private static final int DEFAULT_ITERATIONS = 5;
+
+	private static final String USAGE =
+			"Usage: XMLParserBenchmark [<arkivstruktur.xml> | <folder count>] [<iterations>]";
+
+	private XMLParserBenchmark() {
+		// Prevent instantiation
+	}
+
+	public static void main(String... args) throws Exception {
+
+		if (args.length > 2) {
+			throw new IllegalArgumentException(USAGE);
+		}
+
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS;
+
+		File xmlFile;
+		boolean isSynthetic = args.length == 0 || StringUtils.isNumeric(args[0]);
+
+		if (isSynthetic) {
+			int folders = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_FOLDERS;
+			xmlFile = Files.createTempFile("noark-extraction-validator-benchmark-", ".xml").toFile();
+			generate(xmlFile, folders);
+		} else {
+			xmlFile = new File(args[0]);
+		}
+
+		try {
+			LOGGER.info("Benchmarking the XML parsers on {} ({} bytes) ...", xmlFile, xmlFile.length());
+
+			for (XMLParserType parserType : XMLParserType.values()) {
+				benchmark(parserType, xmlFile, iterations);
+			}
+		} finally {
+			if (isSynthetic) {
+				FileUtils.deleteQuietly(xmlFile);
+			}
+		}
+	}
+
+	private static void benchmark(XMLParserType parserType, File xmlFile, int iterations) throws Exception {
+
+		XMLReader reader = parserType.createXMLReader();
+		ConsumingHandler handler = new ConsumingHandler();
+		reader.setContentHandler(handler);
+
+		// Warm up
+		parse(reader, xmlFile);
+
+		long bestNanos = Long.MAX_VALUE;
+		long totalNanos = 0;
+
+		for (int i = 0; i < iterations; i++) {
+
+			long start = System.nanoTime();
+			parse(reader, xmlFile);
+			long nanos = System.nanoTime() - start;
+
+			bestNanos = Math.min(bestNanos, nanos);
+			totalNanos += nanos;
+		}
+
+		LOGGER.info(
+				"{} ({}): best {} MB/s, average {} MB/s, {} elements, {} characters",
+				parserType, getImplementationName(reader), toThroughput(xmlFile.length(), bestNanos),
+				toThroughput(xmlFile.length() * iterations, totalNanos), handler.elements, handler.characters);
+	}
+
+	private static void parse(XMLReader reader, File xmlFile) throws Exception {
+
+		try (InputStream is = new BufferedInputStream(new FileInputStream(xmlFile))) {
+			reader.parse(new InputSource(is));
+		}
+	}
+
+	private static String getImplementationName(XMLReader reader) {
+
+		if (reader instanceof StaxXMLReader) {
+			return ((StaxXMLReader) reader).getInputFactory().getClass().getName();
+		}
+
+		return reader.getClass().getName();
+	}
+
+	private static String toThroughput(long bytes, long nanos) {
+
+		return String.format("%.1f", bytes / (nanos / 1e9) / (1024 * 1024));
+	}
+
+	/**
+	 * Generates an arkivstruktur.xml file with the specified number of saksmappe elements, each with two journalpost
+	 * elements that have a dokumentbeskrivelse and a dokumentobjekt.
+	 */
+	static void generate(File xmlFile, int folders) throws IOException {
+
+		try (Writer writer = new BufferedWriter(
+				new OutputStreamWriter(FileUtils.openOutputStream(xmlFile), StandardCharsets.UTF_8))) {
+
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			writer.write("<arkiv xmlns=\"http://www.arkivverket.no/standarder/noark5/arkivstruktur\" "
+					+ "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n");
+			writer.write("<systemID>arkiv</systemID><tittel>Syntetisk arkiv</tittel>\n");
+			writer.write("<arkivdel><systemID>arkivdel</systemID><tittel>Arkivdel</tittel>\n");
+			writer.write("<klassifikasjonssystem><systemID>klassifikasjonssystem</systemID>\n");
+			writer.write("<klasse><systemID>klasse</systemID><klasseID>1</klasseID><tittel>Klasse</tittel>\n");
+
+			for (int i = 0; i < folders; i++) {
+
+				writer.write("<mappe xsi:type=\"saksmappe\">\n");
+				writer.write("<systemID>mappe-" + i + "</systemID>\n");
+				writer.write("<mappeID>2017/" + i + "</mappeID>\n");
+				writer.write("<tittel>S\u00f8knad om \u00f8kt tilskudd &amp; st\u00f8tte nr. " + i + "</tittel>\n");
+				writer.write("<opprettetDato>2017-01-01T00:00:00</opprettetDato>\n");
+				writer.write("<opprettetAv>\u00c6rlig \u00c5smund</opprettetAv>\n");
+				writer.write("<saksdato>2017-01-01</saksdato>\n");
+				writer.write("<saksstatus>Avsluttet</saksstatus>\n");
+
+				for (int j = 0; j < 2; j++) {
+
+					String id = i + "-" + j;
+
+					writer.write("<registrering xsi:type=\"journalpost\">\n");
+					writer.write("<systemID>registrering-" + id + "</systemID>\n");
+					writer.write("<opprettetDato>2017-01-01T00:00:00</opprettetDato>\n");
+					writer.write("<opprettetAv>\u00c6rlig \u00c5smund</opprettetAv>\n");
+					writer.write("<dokumentbeskrivelse>\n");
+					writer.write("<systemID>dokumentbeskrivelse-" + id + "</systemID>\n");
+					writer.write("<dokumenttype>Brev</dokumenttype>\n");
+					writer.write("<tittel>Vedtak i sak " + id + "</tittel>\n");
+					writer.write("<tilknyttetRegistreringSom>Hoveddokument</tilknyttetRegistreringSom>\n");
+					writer.write("<dokumentnummer>1</dokumentnummer>\n");
+					writer.write("<dokumentobjekt>\n");
+					writer.write("<versjonsnummer>1</versjonsnummer>\n");
+					writer.write("<variantformat>Arkivformat</variantformat>\n");
+					writer.write("<format>PDF/A</format>\n");
+					writer.write("<referanseDokumentfil>dokumenter/" + id + ".pdf</referanseDokumentfil>\n");
+					writer.write("<sjekksum>" + StringUtils.leftPad(Integer.toHexString(i * 2 + j), 64, '0')
+							+ "</sjekksum>\n");
+					writer.write("<sjekksumAlgoritme>SHA256</sjekksumAlgoritme>\n");
+					writer.write("<filstoerrelse>1024</filstoerrelse>\n");
+					writer.write("</dokumentobjekt>\n");
+					writer.write("</dokumentbeskrivelse>\n");
+					writer.write("<journalposttype>Inng\u00e5ende dokument</journalposttype>\n");
+					writer.write("<journalstatus>Arkivert</journalstatus>\n");
+					writer.write("</registrering>\n");
+				}
+
+				writer.write("</mappe>\n");
+			}
+
+			writer.write("</klasse>\n</klassifikasjonssystem>\n</arkivdel>\n</arkiv>\n");
+		}
+	}
+
+	/**
+	 * Consumes the reported content as the handlers of the stored files do, i.e. it inspects the attributes of each
+	 * element and collects its text.
+	 */
+	private static final class ConsumingHandler extends DefaultHandler {
+
+		private final StringBuilder text = new StringBuilder();
+
+		private long elements;
+		private long characters;
+
+		@Override
+		public void startDocument() {
+
+			elements = 0;
+			characters = 0;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) {
+
+			elements++;
+			text.setLength(0);
+
+			for (int i = 0; i < attributes.getLength(); i++) {
+				characters += attributes.getValue(i).length();
+			}
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+
+			text.append(ch, start, length);
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) {
+
+			characters += text.toString().trim().length();
+		}
+	}
+}
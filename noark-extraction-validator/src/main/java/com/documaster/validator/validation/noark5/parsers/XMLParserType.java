@@ -0,0 +1,92 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.parsers;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+/**
+ * The available parsers of the XML files that are stored.
+ * <p/>
+ * The parsers are provided as {@link XMLReader}s that report the content of the files to the handlers exactly as a
+ * SAX parser that is not namespace-aware does, so that the handlers can be used with any of them.
+ */
+public enum XMLParserType {
+
+	/**
+	 * The JAXP SAX parser, i.e. the Xerces parser of the JDK unless another {@link SAXParserFactory} is configured.
+	 */
+	SAX,
+
+	/**
+	 * The JAXP StAX parser through a SAX adapter ({@link StaxXMLReader}). The {@link XMLInputFactory} is looked up on
+	 * the class path, so that Woodstox or Aalto is used if either is present. Otherwise, the parser of the JDK is used.
+	 */
+	STAX,
+
+	/**
+	 * A scanner that is specialized in the UTF-8 encoded XML files of extraction packages ({@link XMLScanner}). Files
+	 * it does not support are parsed with {@link #SAX}.
+	 */
+	SCANNER;
+
+	public XMLReader createXMLReader() throws SAXException {
+
+		switch (this) {
+			case SAX:
+				try {
+					return SAXParserFactory.newInstance().newSAXParser().getXMLReader();
+				} catch (ParserConfigurationException ex) {
+					throw new SAXException("Could not create a SAX parser", ex);
+				}
+			case STAX:
+				XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+				try {
+					inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+				} catch (IllegalArgumentException ex) {
+					// Some parsers (e.g. Aalto) only support namespace-aware parsing
+					inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+				}
+				inputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+				inputFactory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, true);
+				return new StaxXMLReader(inputFactory);
+			case SCANNER:
+				return new XMLScanner();
+			default:
+				throw new IllegalStateException("Unknown XML parser type: " + this);
+		}
+	}
+
+	/**
+	 * Retrieves the type of the parser the specified {@link XMLReader} was created by.
+	 */
+	static XMLParserType of(XMLReader reader) {
+
+		if (reader instanceof StaxXMLReader) {
+			return STAX;
+		} else if (reader instanceof XMLScanner) {
+			return SCANNER;
+		}
+
+		return SAX;
+	}
+}
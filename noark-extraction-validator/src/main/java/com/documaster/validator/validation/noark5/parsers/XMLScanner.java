@@ -0,0 +1,1092 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.parsers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * An {@link XMLReader} that scans UTF-8 encoded XML files without a document type declaration, i.e. the XML files of
+ * a Noark extraction package, byte by byte. It reports the content as a SAX parser that is not namespace-aware does.
+ * <p/>
+ * The scanner supports elements, attributes, character data, the predefined entities, character references, CDATA
+ * sections, comments and processing instructions. It decodes the content into reused buffers and reuses the name of
+ * each distinct element and attribute, so that it allocates next to nothing per element.
+ * <p/>
+ * Whether a file is supported is decided from its prolog before any content is reported. Files that are not supported
+ * (e.g. files with a document type declaration or in another encoding) are parsed with {@link XMLParserType#SAX}
+ * instead.
+ * <p/>
+ * The scanner is meant for files that have already been checked for well-formedness: it rejects malformed markup and
+ * mismatched tags, but it does not perform all of the checks of a conforming parser (e.g. it does not reject
+ * duplicate attributes or characters that are not allowed in XML). Columns are counted in bytes.
+ * <p/>
+ * The scanner reports the byte offsets of the tags it reports elements for (see {@link OffsetLocator}); the offsets
+ * are not known for files that are parsed with {@link XMLParserType#SAX}.
+ */
+final class XMLScanner implements XMLReader, OffsetLocator {
+
+	private static final String NAMESPACES = "http://xml.org/sax/features/namespaces";
+	private static final String NAMESPACE_PREFIXES = "http://xml.org/sax/features/namespace-prefixes";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final String ATTRIBUTE_TYPE = "CDATA";
+
+	private static final String CDATA_SECTION = "CDATA";
+
+	private static final Pattern ENCODING = Pattern.compile("encoding\\s*=\\s*[\"']([^\"']*)[\"']");
+
+	private ContentHandler contentHandler;
+	private ErrorHandler errorHandler;
+	private DTDHandler dtdHandler;
+	private EntityResolver entityResolver;
+
+	/**
+	 * The SAX parser that parses the current file if it is not supported by the scanner
+	 */
+	private XMLFilterImpl fallback;
+
+	private String systemId;
+	private InputStream is;
+
+	private final byte[] bytes = new byte[BUFFER_SIZE];
+	private int position;
+	private int limit;
+
+	/**
+	 * The offset of the first byte of the buffer in the file
+	 */
+	private long bufferOffset;
+
+	private int line;
+	private long lineOffset;
+
+	private long tagStart;
+	private long tagEnd;
+
+	private final char[] text = new char[BUFFER_SIZE];
+	private int textLength;
+
+	private final StringBuilder value = new StringBuilder();
+
+	private final NameCache names = new NameCache();
+
+	private final AttributesImpl attributes = new AttributesImpl();
+
+	private String[] elements = new String[32];
+	private int depth;
+
+	@Override
+	public void parse(String systemId) throws IOException, SAXException {
+
+		parse(new InputSource(systemId));
+	}
+
+	@Override
+	public void parse(InputSource input) throws IOException, SAXException {
+
+		if (input.getByteStream() == null) {
+			if (input.getCharacterStream() != null) {
+				parseWithFallback(input);
+			} else {
+				try (InputStream systemIdStream = new URL(input.getSystemId()).openStream()) {
+					InputSource byteInput = new InputSource(systemIdStream);
+					byteInput.setSystemId(input.getSystemId());
+					parse(byteInput);
+				}
+			}
+			return;
+		}
+
+		systemId = input.getSystemId();
+		is = input.getByteStream();
+		position = 0;
+		limit = 0;
+		bufferOffset = 0;
+		line = 1;
+		lineOffset = 0;
+		tagStart = -1;
+		tagEnd = -1;
+		textLength = 0;
+		depth = 0;
+
+		try {
+			fill();
+
+			if (!isSupported(input.getEncoding())) {
+
+				// Parse the already read bytes and the rest of the stream with SAX
+				InputSource fallbackInput = new InputSource(new SequenceInputStream(
+						new ByteArrayInputStream(Arrays.copyOf(bytes, limit)), is));
+				fallbackInput.setSystemId(systemId);
+				fallbackInput.setEncoding(input.getEncoding());
+				parseWithFallback(fallbackInput);
+				return;
+			}
+
+			scanDocument();
+
+		} finally {
+			is = null;
+			Arrays.fill(elements, null);
+		}
+	}
+
+	private void parseWithFallback(InputSource input) throws IOException, SAXException {
+
+		fallback = new XMLFilterImpl(XMLParserType.SAX.createXMLReader());
+		fallback.setContentHandler(contentHandler);
+		fallback.setErrorHandler(errorHandler);
+		fallback.setDTDHandler(dtdHandler);
+		fallback.setEntityResolver(entityResolver);
+
+		try {
+			fallback.parse(input);
+		} finally {
+			fallback = null;
+		}
+	}
+
+	/**
+	 * Fills the buffer with the next bytes of the stream.
+	 *
+	 * @return Whether any bytes were read
+	 */
+	private boolean fill() throws IOException {
+
+		bufferOffset += limit;
+		position = 0;
+		limit = IOUtils.read(is, bytes);
+
+		return limit > 0;
+	}
+
+	/**
+	 * Checks whether the prolog at the start of the buffer only contains supported constructs.
+	 */
+	private boolean isSupported(String encoding) {
+
+		if (encoding != null && !isSupportedEncoding(encoding)) {
+			return false;
+		}
+
+		int i = startsWith(0, "\u00ef\u00bb\u00bf") ? 3 : 0;
+
+		// UTF-16 and UTF-32 files start with a byte order mark or a zero byte
+		if (limit > i && (bytes[i] == 0 || bytes[i] == (byte) 0xFE || bytes[i] == (byte) 0xFF)) {
+			return false;
+		}
+
+		while (i < limit) {
+
+			if (isWhitespace(bytes[i])) {
+				i++;
+			} else if (startsWith(i, "<?")) {
+				int end = indexOf(i + 2, "?>");
+				if (end == -1) {
+					return false;
+				}
+				if (startsWith(i, "<?xml") && isWhitespace(bytes[i + 5])) {
+					Matcher matcher = ENCODING.matcher(new String(bytes, i, end - i, StandardCharsets.US_ASCII));
+					if (matcher.find() && !isSupportedEncoding(matcher.group(1))) {
+						return false;
+					}
+				}
+				i = end + 2;
+			} else if (startsWith(i, "<!--")) {
+				int end = indexOf(i + 4, "-->");
+				if (end == -1) {
+					return false;
+				}
+				i = end + 3;
+			} else {
+				// The root element (a document type declaration or any other content is not supported)
+				return bytes[i] == '<' && i + 1 < limit && isNameStart(bytes[i + 1]);
+			}
+		}
+
+		return false;
+	}
+
+	private static boolean isSupportedEncoding(String encoding) {
+
+		return "UTF-8".equalsIgnoreCase(encoding) || "UTF8".equalsIgnoreCase(encoding)
+				|| "US-ASCII".equalsIgnoreCase(encoding) || "ASCII".equalsIgnoreCase(encoding);
+	}
+
+	private boolean startsWith(int offset, String prefix) {
+
+		if (offset + prefix.length() > limit) {
+			return false;
+		}
+
+		for (int i = 0; i < prefix.length(); i++) {
+			if (bytes[offset + i] != (byte) prefix.charAt(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private int indexOf(int offset, String sequence) {
+
+		for (int i = offset; i <= limit - sequence.length(); i++) {
+			if (startsWith(i, sequence)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	private void scanDocument() throws IOException, SAXException {
+
+		if (contentHandler != null) {
+			contentHandler.setDocumentLocator(this);
+			contentHandler.startDocument();
+		}
+
+		if (startsWith(0, "\u00ef\u00bb\u00bf")) {
+			position = 3;
+		}
+
+		boolean hasRootElement = false;
+
+		while (true) {
+
+			if (depth == 0) {
+
+				// Prolog or epilog
+				int b = skipWhitespace();
+
+				if (b == -1) {
+					if (!hasRootElement) {
+						throw fatalError("Premature end of file.");
+					}
+					break;
+				} else if (b != '<') {
+					throw fatalError(hasRootElement
+							? "Content is not allowed in trailing section."
+							: "Content is not allowed in prolog.");
+				}
+
+			} else if (!scanText()) {
+				throw fatalError("XML document structures must start and end within the same entity.");
+			}
+
+			// The '<' has been read
+			tagStart = bufferOffset + position - 1;
+
+			int b = read();
+
+			if (b == '/') {
+				scanEndTag();
+			} else if (b == '?') {
+				scanProcessingInstruction();
+			} else if (b == '!') {
+				scanCommentOrCData();
+			} else if (depth == 0 && hasRootElement) {
+				throw fatalError("The markup in the document following the root element must be well-formed.");
+			} else {
+				scanStartTag(b);
+				hasRootElement = true;
+			}
+		}
+
+		if (contentHandler != null) {
+			contentHandler.endDocument();
+		}
+	}
+
+	private int read() throws IOException {
+
+		if (position == limit && !fill()) {
+			return -1;
+		}
+
+		return bytes[position++] & 0xFF;
+	}
+
+	private int readRequired() throws IOException, SAXException {
+
+		int b = read();
+
+		if (b == -1) {
+			throw fatalError("XML document structures must start and end within the same entity.");
+		}
+
+		return b;
+	}
+
+	private void newLine() {
+
+		line++;
+		lineOffset = bufferOffset + position;
+	}
+
+	/**
+	 * Skips whitespace.
+	 *
+	 * @return The first byte that is not whitespace (consumed) or -1 at the end of the stream
+	 */
+	private int skipWhitespace() throws IOException {
+
+		while (true) {
+
+			int b = read();
+
+			if (b == '\n') {
+				newLine();
+			} else if (b != ' ' && b != '\t' && b != '\r') {
+				return b;
+			}
+		}
+	}
+
+	/**
+	 * Reports the character data up to the next markup.
+	 *
+	 * @return Whether markup follows; false at the end of the stream
+	 */
+	private boolean scanText() throws IOException, SAXException {
+
+		while (true) {
+
+			if (position == limit) {
+				flushText();
+				if (!fill()) {
+					return false;
+				}
+			}
+
+			byte b = bytes[position];
+
+			if (b == '<') {
+				position++;
+				flushText();
+				return true;
+			}
+
+			position++;
+
+			if (textLength >= text.length - 2) {
+				flushText();
+			}
+
+			if (b >= 0 && b != '&' && b != '\r') {
+				text[textLength++] = (char) b;
+				if (b == '\n') {
+					newLine();
+				}
+			} else if (b == '&') {
+				scanReference(text);
+			} else if (b == '\r') {
+				text[textLength++] = '\n';
+				skipLineFeedAfterCarriageReturn();
+			} else {
+				textLength = decode(b & 0xFF, text, textLength);
+			}
+		}
+	}
+
+	private void flushText() throws SAXException {
+
+		if (textLength > 0) {
+			if (contentHandler != null) {
+				contentHandler.characters(text, 0, textLength);
+			}
+			textLength = 0;
+		}
+	}
+
+	private void skipLineFeedAfterCarriageReturn() throws IOException {
+
+		if ((position < limit || fill()) && bytes[position] == '\n') {
+			position++;
+		}
+
+		newLine();
+	}
+
+	/**
+	 * Decodes the multi-byte UTF-8 sequence starting with the specified byte into the specified buffer.
+	 *
+	 * @return The new length of the buffer
+	 */
+	private int decode(int b, char[] buffer, int length) throws IOException, SAXException {
+
+		int codePoint;
+		int count;
+
+		if ((b & 0xE0) == 0xC0) {
+			codePoint = b & 0x1F;
+			count = 1;
+		} else if ((b & 0xF0) == 0xE0) {
+			codePoint = b & 0x0F;
+			count = 2;
+		} else if ((b & 0xF8) == 0xF0) {
+			codePoint = b & 0x07;
+			count = 3;
+		} else {
+			throw fatalError("Invalid byte 1 of 1-byte UTF-8 sequence.");
+		}
+
+		for (int i = 0; i < count; i++) {
+			int next = readRequired();
+			if ((next & 0xC0) != 0x80) {
+				throw fatalError(String.format(
+						"Invalid byte %d of %d-byte UTF-8 sequence.", i + 2, count + 1));
+			}
+			codePoint = (codePoint << 6) | (next & 0x3F);
+		}
+
+		return length + Character.toChars(codePoint, buffer, length);
+	}
+
+	/**
+	 * Decodes the entity or character reference following an ampersand into the specified buffer.
+	 */
+	private void scanReference(char[] buffer) throws IOException, SAXException {
+
+		int b = readRequired();
+
+		if (b == '#') {
+
+			int radix = 10;
+			int codePoint = 0;
+
+			b = readRequired();
+			if (b == 'x') {
+				radix = 16;
+				b = readRequired();
+			}
+
+			while (b != ';') {
+				int digit = Character.digit(b, radix);
+				if (digit == -1 || codePoint > Character.MAX_CODE_POINT) {
+					throw fatalError("A character reference must end with the ';' delimiter.");
+				}
+				codePoint = codePoint * radix + digit;
+				b = readRequired();
+			}
+
+			if (!Character.isValidCodePoint(codePoint)) {
+				throw fatalError("Character reference \"&#" + codePoint + "\" is an invalid XML character.");
+			}
+
+			textLength += Character.toChars(codePoint, buffer, textLength);
+			return;
+		}
+
+		String name = scanName(b);
+
+		if (readRequired() != ';') {
+			throw fatalError("The reference to entity \"" + name + "\" must end with the ';' delimiter.");
+		}
+
+		switch (name) {
+			case "lt":
+				buffer[textLength++] = '<';
+				break;
+			case "gt":
+				buffer[textLength++] = '>';
+				break;
+			case "amp":
+				buffer[textLength++] = '&';
+				break;
+			case "quot":
+				buffer[textLength++] = '"';
+				break;
+			case "apos":
+				buffer[textLength++] = '\'';
+				break;
+			default:
+				throw fatalError("The entity \"" + name + "\" was referenced, but not declared.");
+		}
+	}
+
+	/**
+	 * Scans a name starting with the specified byte. The bytes following the name are not consumed.
+	 */
+	private String scanName(int first) throws IOException, SAXException {
+
+		if (first == -1 || !isNameStart((byte) first)) {
+			throw fatalError("The markup in the document must be well-formed.");
+		}
+
+		names.start(first);
+
+		while (true) {
+
+			if (position == limit && !fill()) {
+				break;
+			}
+
+			byte b = bytes[position];
+			if (isWhitespace(b) || b == '>' || b == '/' || b == '=' || b == ';' || b == '?') {
+				break;
+			}
+
+			names.append(b);
+			position++;
+		}
+
+		return names.get();
+	}
+
+	private void scanStartTag(int first) throws IOException, SAXException {
+
+		String name = scanName(first);
+
+		attributes.clear();
+
+		boolean isEmpty = false;
+
+		while (true) {
+
+			int b = skipWhitespace();
+
+			if (b == '>') {
+				break;
+			} else if (b == '/') {
+				if (readRequired() != '>') {
+					throw fatalError("Element type \"" + name + "\" must be followed by either attribute "
+							+ "specifications, \">\" or \"/>\".");
+				}
+				isEmpty = true;
+				break;
+			} else if (b == -1) {
+				throw fatalError("XML document structures must start and end within the same entity.");
+			}
+
+			String attributeName = scanName(b);
+
+			if (skipWhitespace() != '=') {
+				throw fatalError("Attribute name \"" + attributeName + "\" associated with an element type \""
+						+ name + "\" must be followed by the ' = ' character.");
+			}
+
+			int quote = skipWhitespace();
+			if (quote != '"' && quote != '\'') {
+				throw fatalError("Open quote is expected for attribute \"" + attributeName
+						+ "\" associated with an element type \"" + name + "\".");
+			}
+
+			attributes.addAttribute("", "", attributeName, ATTRIBUTE_TYPE, scanAttributeValue(quote));
+		}
+
+		tagEnd = bufferOffset + position;
+
+		if (contentHandler != null) {
+			contentHandler.startElement("", "", name, attributes);
+		}
+
+		if (isEmpty) {
+			if (contentHandler != null) {
+				contentHandler.endElement("", "", name);
+			}
+		} else {
+			if (depth == elements.length) {
+				elements = Arrays.copyOf(elements, depth * 2);
+			}
+			elements[depth++] = name;
+		}
+	}
+
+	private String scanAttributeValue(int quote) throws IOException, SAXException {
+
+		value.setLength(0);
+
+		while (true) {
+
+			int b = readRequired();
+
+			if (b == quote) {
+				break;
+			} else if (b == '<') {
+				throw fatalError("The value of attribute must not contain the '<' character.");
+			} else if (b == '&') {
+				textLength = 0;
+				scanReference(text);
+				value.append(text, 0, textLength);
+				textLength = 0;
+			} else if (b == '\n' || b == '\t') {
+				// Attribute value normalization
+				value.append(' ');
+				if (b == '\n') {
+					newLine();
+				}
+			} else if (b == '\r') {
+				value.append(' ');
+				skipLineFeedAfterCarriageReturn();
+			} else if (b < 0x80) {
+				value.append((char) b);
+			} else {
+				int length = decode(b, text, 0);
+				value.append(text, 0, length);
+			}
+		}
+
+		return value.toString();
+	}
+
+	private void scanEndTag() throws IOException, SAXException {
+
+		String name = scanName(readRequired());
+
+		if (skipWhitespace() != '>') {
+			throw fatalError("The end-tag for element type \"" + name + "\" must end with a '>' delimiter.");
+		}
+
+		tagEnd = bufferOffset + position;
+
+		if (depth == 0 || !name.equals(elements[depth - 1])) {
+			throw fatalError(depth == 0
+					? "The markup in the document following the root element must be well-formed."
+					: "The element type \"" + elements[depth - 1]
+					+ "\" must be terminated by the matching end-tag \"</" + elements[depth - 1] + ">\".");
+		}
+
+		elements[--depth] = null;
+
+		if (contentHandler != null) {
+			contentHandler.endElement("", "", name);
+		}
+	}
+
+	private void scanProcessingInstruction() throws IOException, SAXException {
+
+		String target = scanName(readRequired());
+
+		value.setLength(0);
+
+		int b = skipWhitespace();
+
+		while (true) {
+
+			if (b == -1) {
+				throw fatalError("XML document structures must start and end within the same entity.");
+			} else if (b == '?') {
+				b = readRequired();
+				if (b == '>') {
+					break;
+				}
+				value.append('?');
+				continue;
+			} else if (b == '\n') {
+				newLine();
+			}
+
+			if (b < 0x80) {
+				value.append((char) b);
+			} else {
+				int length = decode(b, text, 0);
+				value.append(text, 0, length);
+			}
+
+			b = read();
+		}
+
+		// The XML declaration is not reported
+		if (!"xml".equals(target) && contentHandler != null) {
+			contentHandler.processingInstruction(target, value.toString());
+		}
+	}
+
+	private void scanCommentOrCData() throws IOException, SAXException {
+
+		int b = readRequired();
+
+		if (b == '-') {
+			if (readRequired() != '-') {
+				throw fatalError("The markup in the document must be well-formed.");
+			}
+			skipComment();
+			return;
+		}
+
+		if (b != '[' || depth == 0) {
+			throw fatalError("The markup in the document must be well-formed.");
+		}
+
+		for (int i = 0; i < CDATA_SECTION.length(); i++) {
+			if (readRequired() != CDATA_SECTION.charAt(i)) {
+				throw fatalError("The markup in the document must be well-formed.");
+			}
+		}
+
+		if (readRequired() != '[') {
+			throw fatalError("The markup in the document must be well-formed.");
+		}
+
+		scanCData();
+	}
+
+	private void skipComment() throws IOException, SAXException {
+
+		int dashes = 0;
+
+		while (true) {
+
+			int b = readRequired();
+
+			if (b == '>' && dashes >= 2) {
+				return;
+			} else if (b == '\n') {
+				newLine();
+			}
+
+			dashes = b == '-' ? dashes + 1 : 0;
+		}
+	}
+
+	/**
+	 * Reports the content of a CDATA section as character data.
+	 */
+	private void scanCData() throws IOException, SAXException {
+
+		int brackets = 0;
+
+		while (true) {
+
+			int b = readRequired();
+
+			if (b == ']') {
+				brackets++;
+				continue;
+			} else if (b == '>' && brackets >= 2) {
+				appendBrackets(brackets - 2);
+				break;
+			}
+
+			appendBrackets(brackets);
+			brackets = 0;
+
+			if (textLength >= text.length - 2) {
+				flushText();
+			}
+
+			if (b == '\r') {
+				text[textLength++] = '\n';
+				skipLineFeedAfterCarriageReturn();
+			} else if (b < 0x80) {
+				text[textLength++] = (char) b;
+				if (b == '\n') {
+					newLine();
+				}
+			} else {
+				textLength = decode(b, text, textLength);
+			}
+		}
+
+		flushText();
+	}
+
+	private void appendBrackets(int count) throws SAXException {
+
+		for (int i = 0; i < count; i++) {
+			if (textLength == text.length) {
+				flushText();
+			}
+			text[textLength++] = ']';
+		}
+	}
+
+	@Override
+	public String getPublicId() {
+
+		return null;
+	}
+
+	@Override
+	public String getSystemId() {
+
+		return systemId;
+	}
+
+	@Override
+	public int getLineNumber() {
+
+		return line;
+	}
+
+	@Override
+	public int getColumnNumber() {
+
+		return (int) (bufferOffset + position - lineOffset) + 1;
+	}
+
+	@Override
+	public long getTagStart() {
+
+		return tagStart;
+	}
+
+	@Override
+	public long getTagEnd() {
+
+		return tagEnd;
+	}
+
+	@Override
+	public boolean getFeature(String name) throws SAXNotRecognizedException {
+
+		switch (name) {
+			case NAMESPACES:
+				return false;
+			case NAMESPACE_PREFIXES:
+				return true;
+			default:
+				throw new SAXNotRecognizedException(name);
+		}
+	}
+
+	@Override
+	public void setFeature(String name, boolean value) throws SAXNotRecognizedException, SAXNotSupportedException {
+
+		if (getFeature(name) != value) {
+			throw new SAXNotSupportedException(name);
+		}
+	}
+
+	@Override
+	public Object getProperty(String name) throws SAXNotRecognizedException {
+
+		throw new SAXNotRecognizedException(name);
+	}
+
+	@Override
+	public void setProperty(String name, Object value) throws SAXNotRecognizedException {
+
+		throw new SAXNotRecognizedException(name);
+	}
+
+	@Override
+	public void setEntityResolver(EntityResolver resolver) {
+
+		this.entityResolver = resolver;
+		if (fallback != null) {
+			fallback.setEntityResolver(resolver);
+		}
+	}
+
+	@Override
+	public EntityResolver getEntityResolver() {
+
+		return entityResolver;
+	}
+
+	@Override
+	public void setDTDHandler(DTDHandler handler) {
+
+		this.dtdHandler = handler;
+		if (fallback != null) {
+			fallback.setDTDHandler(handler);
+		}
+	}
+
+	@Override
+	public DTDHandler getDTDHandler() {
+
+		return dtdHandler;
+	}
+
+	@Override
+	public void setContentHandler(ContentHandler handler) {
+
+		this.contentHandler = handler;
+		if (fallback != null) {
+			fallback.setContentHandler(handler);
+		}
+	}
+
+	@Override
+	public ContentHandler getContentHandler() {
+
+		return contentHandler;
+	}
+
+	@Override
+	public void setErrorHandler(ErrorHandler handler) {
+
+		this.errorHandler = handler;
+		if (fallback != null) {
+			fallback.setErrorHandler(handler);
+		}
+	}
+
+	@Override
+	public ErrorHandler getErrorHandler() {
+
+		return errorHandler;
+	}
+
+	private SAXParseException fatalError(String message) throws SAXException {
+
+		SAXParseException exception = new SAXParseException(message, this);
+
+		if (errorHandler != null) {
+			errorHandler.fatalError(exception);
+		}
+
+		return exception;
+	}
+
+	private static boolean isWhitespace(byte b) {
+
+		return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+	}
+
+	private static boolean isNameStart(byte b) {
+
+		return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b == '_' || b == ':' || b < 0;
+	}
+
+	/**
+	 * Maps the bytes of names to strings, so that a name that recurs in a file is decoded only once.
+	 */
+	private static final class NameCache {
+
+		/**
+		 * The maximum number of cached names; further names are decoded every time
+		 */
+		private static final int MAX_SIZE = 4096;
+
+		private byte[] name = new byte[64];
+		private int length;
+		private int hash;
+
+		private byte[][] keys = new byte[256][];
+		private int[] hashes = new int[256];
+		private String[] values = new String[256];
+		private int size;
+
+		/**
+		 * Starts a new name with the specified byte.
+		 */
+		void start(int b) {
+
+			length = 0;
+			hash = 0;
+			append((byte) b);
+		}
+
+		void append(byte b) {
+
+			if (length == name.length) {
+				name = Arrays.copyOf(name, length * 2);
+			}
+
+			name[length++] = b;
+			hash = 31 * hash + b;
+		}
+
+		/**
+		 * Retrieves the string of the current name.
+		 */
+		String get() {
+
+			int mask = keys.length - 1;
+			int i = (hash ^ (hash >>> 16)) & mask;
+
+			while (keys[i] != null) {
+				if (hashes[i] == hash && matches(keys[i])) {
+					return values[i];
+				}
+				i = (i + 1) & mask;
+			}
+
+			String value = new String(name, 0, length, StandardCharsets.UTF_8);
+
+			if (size < MAX_SIZE) {
+				keys[i] = Arrays.copyOf(name, length);
+				hashes[i] = hash;
+				values[i] = value;
+				if (++size * 2 > keys.length) {
+					resize();
+				}
+			}
+
+			return value;
+		}
+
+		private boolean matches(byte[] key) {
+
+			if (key.length != length) {
+				return false;
+			}
+
+			for (int i = 0; i < length; i++) {
+				if (key[i] != name[i]) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		private void resize() {
+
+			byte[][] oldKeys = keys;
+			int[] oldHashes = hashes;
+			String[] oldValues = values;
+
+			keys = new byte[oldKeys.length * 2][];
+			hashes = new int[keys.length];
+			values = new String[keys.length];
+
+			int mask = keys.length - 1;
+
+			for (int j = 0; j < oldKeys.length; j++) {
+				if (oldKeys[j] == null) {
+					continue;
+				}
+				int i = (oldHashes[j] ^ (oldHashes[j] >>> 16)) & mask;
+				while (keys[i] != null) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[j];
+				hashes[i] = oldHashes[j];
+				values[i] = oldValues[j];
+			}
+		}
+	}
+}
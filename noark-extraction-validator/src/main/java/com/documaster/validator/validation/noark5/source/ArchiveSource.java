@@ -0,0 +1,144 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.source;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * An extraction package that is read from an archive.
+ * <p/>
+ * The XML files and schemas of the package (i.e. the .xml and .xsd files that are at most one directory deep in the
+ * archive) are extracted to a temporary directory; the documents are read from the archive. The root of the package
+ * in the archive is the directory of the topmost arkivstruktur.xml file, so that packages archived with or without
+ * their enclosing directory are supported.
+ */
+abstract class ArchiveSource extends PackageSource {
+
+	private static final String ROOT_ENTITY = "arkivstruktur.xml";
+
+	private final File tempDirectory;
+
+	private final File packageDirectory;
+
+	private final DocumentReader documentReader;
+
+	/**
+	 * The path of the root of the package in the archive (empty or ending with a slash)
+	 */
+	private String root = null;
+
+	ArchiveSource() throws IOException {
+
+		this.tempDirectory = Files.createTempDirectory("noark-extraction-validator-package-").toFile();
+		this.packageDirectory = new File(tempDirectory, "package");
+		this.documentReader = new DocumentReader(new File(tempDirectory, "documents"));
+	}
+
+	DocumentReader getDocumentReader() {
+
+		return documentReader;
+	}
+
+	/**
+	 * Normalizes the name of an archive entry to a relative path with forward slashes.
+	 *
+	 * @return The path or null if the name points outside of the archive
+	 */
+	static String normalize(String entryName) {
+
+		String name = FilenameUtils.normalize(StringUtils.removeStart(entryName, "/"), true);
+
+		return name != null && !name.startsWith("/") ? StringUtils.removeStart(name, "./") : null;
+	}
+
+	/**
+	 * Checks whether the entry with the specified normalized name is extracted.
+	 */
+	static boolean isEntity(String name) {
+
+		return StringUtils.countMatches(name, "/") <= 1 && FilenameUtils.isExtension(name.toLowerCase(), new String[] {
+				"xml", "xsd" });
+	}
+
+	/**
+	 * Extracts the entry with the specified normalized name.
+	 */
+	void extract(String name, InputStream is) throws IOException {
+
+		try (OutputStream os = FileUtils.openOutputStream(new File(packageDirectory, name))) {
+			IOUtils.copy(is, os);
+		}
+
+		if (FilenameUtils.getName(name).equals(ROOT_ENTITY)) {
+			String path = FilenameUtils.getPath(name);
+			if (root == null || path.length() < root.length()) {
+				root = path;
+			}
+		}
+	}
+
+	@Override
+	public File getDirectory() {
+
+		return root == null || root.isEmpty() ? packageDirectory : new File(packageDirectory, root);
+	}
+
+	/**
+	 * Retrieves the information of the document with the specified path relative to the root of the package. The
+	 * document is missing if the path points outside of the package.
+	 */
+	@Override
+	public DocumentInfo getDocumentInfo(String path) throws IOException {
+
+		String name = normalize(FilenameUtils.separatorsToUnix(path));
+		if (name == null) {
+			return DocumentInfo.MISSING;
+		}
+
+		File extractedDocument = new File(getDirectory(), name);
+		if (extractedDocument.isFile()) {
+			return DocumentInfo.of(extractedDocument);
+		}
+
+		DocumentInfo document = findDocument((root != null ? root : "") + name);
+
+		return document != null ? document : DocumentInfo.MISSING;
+	}
+
+	/**
+	 * Retrieves the information of the document with the specified normalized name.
+	 *
+	 * @return The information or null if the archive does not contain the document
+	 */
+	abstract DocumentInfo findDocument(String name) throws IOException;
+
+	@Override
+	public void close() throws IOException {
+
+		FileUtils.deleteQuietly(tempDirectory);
+	}
+}
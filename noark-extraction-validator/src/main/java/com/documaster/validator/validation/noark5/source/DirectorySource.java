@@ -0,0 +1,53 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.source;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FilenameUtils;
+
+/**
+ * An extraction package that has been unpacked into a directory.
+ */
+final class DirectorySource extends PackageSource {
+
+	private final File directory;
+
+	DirectorySource(File directory) {
+
+		this.directory = directory;
+	}
+
+	@Override
+	public File getDirectory() {
+
+		return directory;
+	}
+
+	@Override
+	public DocumentInfo getDocumentInfo(String path) throws IOException {
+
+		return DocumentInfo.of(new File(directory, FilenameUtils.separatorsToSystem(path)));
+	}
+
+	@Override
+	public void close() {
+		// The directory is not owned by the source
+	}
+}
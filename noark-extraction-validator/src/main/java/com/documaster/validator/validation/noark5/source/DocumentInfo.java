@@ -0,0 +1,84 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.source;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.documaster.validator.validation.utils.ChecksumCalculator;
+import com.documaster.validator.validation.utils.PDFAValidator;
+
+/**
+ * The file information of a document of an extraction package that is stored with its dokumentobjekt.
+ */
+public final class DocumentInfo {
+
+	/**
+	 * The information of a document that is missing from the package
+	 */
+	static final DocumentInfo MISSING = new DocumentInfo(null, null, false);
+
+	private final String checksum;
+
+	private final String contentType;
+
+	private final boolean isValidPdfA;
+
+	DocumentInfo(String checksum, String contentType, boolean isValidPdfA) {
+
+		this.checksum = checksum;
+		this.contentType = contentType;
+		this.isValidPdfA = isValidPdfA;
+	}
+
+	/**
+	 * Retrieves the information of the specified document file.
+	 */
+	static DocumentInfo of(File document) throws IOException {
+
+		String checksum = ChecksumCalculator.getFileSha256Checksum(document);
+		boolean isValidPdfA = PDFAValidator.isValidPdfaFile(document);
+
+		String contentType = isValidPdfA ? PDFAValidator.VALID_FILE_TYPE : PDFAValidator.getFileType(document);
+
+		return new DocumentInfo(checksum, contentType, isValidPdfA);
+	}
+
+	/**
+	 * Retrieves the SHA-256 checksum of the document.
+	 *
+	 * @return The checksum or null if the document could not be read
+	 */
+	public String getChecksum() {
+
+		return checksum;
+	}
+
+	/**
+	 * Retrieves the detected content type of the document.
+	 */
+	public String getContentType() {
+
+		return contentType;
+	}
+
+	public boolean isValidPdfA() {
+
+		return isValidPdfA;
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.source;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.documaster.validator.validation.utils.PDFAValidator;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Reads the documents of an archive as streams.
+ * <p/>
+ * The checksum and the type of a document are determined while it is read. Only PDF documents are copied to a
+ * temporary file, as their PDF/A validation requires random access; the validation itself is left to
+ * {@link PendingDocument#verify()}, so that it can be deferred while the archive is read on.
+ */
+final class DocumentReader {
+
+	private static final int DETECTION_LENGTH = PDFAValidator.getDetectionLength();
+
+	private final File directory;
+
+	private final AtomicLong copies = new AtomicLong();
+
+	DocumentReader(File directory) {
+
+		this.directory = directory;
+	}
+
+	/**
+	 * Reads the document with the specified name from the specified stream.
+	 */
+	PendingDocument read(InputStream is, String name) throws IOException {
+
+		MessageDigest digest = DigestUtils.getSha256Digest();
+
+		byte[] prefix = new byte[DETECTION_LENGTH];
+		int prefixLength = IOUtils.read(is, prefix);
+		digest.update(prefix, 0, prefixLength);
+
+		String fileName = FilenameUtils.getName(name);
+		String contentType = PDFAValidator.getFileType(Arrays.copyOf(prefix, prefixLength), fileName);
+
+		if (!PDFAValidator.VALID_FILE_TYPE.equalsIgnoreCase(contentType)) {
+
+			DigestUtils.updateDigest(digest, is);
+			DocumentInfo document = new DocumentInfo(Hex.encodeHexString(digest.digest()), contentType, false);
+
+			return () -> document;
+		}
+
+		// The copy retains the name of the document, as the name is considered when detecting its type
+		File copy = new File(new File(directory, String.valueOf(copies.incrementAndGet())), fileName);
+
+		try (OutputStream os = FileUtils.openOutputStream(copy)) {
+			os.write(prefix, 0, prefixLength);
+			IOUtils.copy(new DigestInputStream(is, digest), os);
+		}
+
+		String checksum = Hex.encodeHexString(digest.digest());
+
+		return () -> {
+			try {
+				boolean isValidPdfA = PDFAValidator.isValidPdfaFile(copy);
+				String copyContentType = isValidPdfA ? PDFAValidator.VALID_FILE_TYPE : PDFAValidator.getFileType(copy);
+				return new DocumentInfo(checksum, copyContentType, isValidPdfA);
+			} finally {
+				FileUtils.deleteQuietly(copy.getParentFile());
+			}
+		};
+	}
+
+	/**
+	 * A document that has been read, but whose verification might be pending.
+	 */
+	interface PendingDocument {
+
+		/**
+		 * Completes the verification of the document.
+		 */
+		DocumentInfo verify() throws IOException;
+	}
+}
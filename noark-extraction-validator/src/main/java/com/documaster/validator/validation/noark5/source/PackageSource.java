@@ -0,0 +1,83 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.source;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The source of an extraction package: a directory or an archive (.zip, .tar, .tar.gz or .tgz) the package is read
+ * from without being unpacked.
+ * <p/>
+ * The XML files and schemas of the package are always available in a directory ({@link #getDirectory()}), so that
+ * they can be validated and parsed as files. The documents of the package are only accessed through
+ * {@link #getDocumentInfo(String)}.
+ */
+public abstract class PackageSource implements Closeable {
+
+	/**
+	 * Opens the extraction package at the specified location.
+	 *
+	 * @param threads
+	 * 		The maximum number of threads the documents of the package may be verified with
+	 */
+	public static PackageSource open(File location, int threads) throws IOException {
+
+		if (location.isDirectory()) {
+			return new DirectorySource(location);
+		}
+
+		String name = location.getName().toLowerCase();
+		if (name.endsWith(".zip")) {
+			return new ZipSource(location);
+		} else if (name.endsWith(".tar")) {
+			return new TarSource(location, false, threads);
+		} else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+			return new TarSource(location, true, threads);
+		} else {
+			throw new IllegalArgumentException("Unsupported extraction package: " + location);
+		}
+	}
+
+	/**
+	 * Checks whether the specified location is an extraction package that can be opened.
+	 */
+	public static boolean isSupported(File location) {
+
+		if (location.isDirectory()) {
+			return true;
+		}
+
+		String name = location.getName().toLowerCase();
+
+		return location.isFile() && (name.endsWith(".zip") || name.endsWith(".tar") || name.endsWith(".tar.gz")
+				|| name.endsWith(".tgz"));
+	}
+
+	/**
+	 * Retrieves the directory that contains the XML files and schemas of the package.
+	 */
+	public abstract File getDirectory();
+
+	/**
+	 * Retrieves the information of the document with the specified path relative to {@link #getDirectory()}, e.g.
+	 * the referanseDokumentfil of a dokumentobjekt.
+	 */
+	public abstract DocumentInfo getDocumentInfo(String path) throws IOException;
+}
@@ -0,0 +1,354 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.source;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Reads the entries of a tar archive (POSIX ustar with GNU long names and pax extended headers) sequentially. Once an
+ * entry has been retrieved with {@link #getNextEntry()}, the stream reads the content of the entry.
+ */
+final class TarInputStream extends FilterInputStream {
+
+	private static final int BLOCK_SIZE = 512;
+
+	private static final byte GNU_LONG_NAME = 'L';
+	private static final byte PAX_HEADER = 'x';
+	private static final byte PAX_GLOBAL_HEADER = 'g';
+
+	private final byte[] header = new byte[BLOCK_SIZE];
+
+	/**
+	 * The number of bytes of the current entry that have not been read
+	 */
+	private long remaining = 0;
+
+	/**
+	 * The number of bytes that pad the current entry to a full block
+	 */
+	private long padding = 0;
+
+	TarInputStream(InputStream is) {
+
+		super(is);
+	}
+
+	/**
+	 * Skips the rest of the current entry and reads the header of the next one.
+	 *
+	 * @return The next entry or null at the end of the archive
+	 */
+	Entry getNextEntry() throws IOException {
+
+		String longName = null;
+		String paxPath = null;
+		Long paxSize = null;
+
+		while (true) {
+
+			IOUtils.skipFully(in, remaining + padding);
+			remaining = 0;
+			padding = 0;
+
+			int count = IOUtils.read(in, header);
+			if (count == 0 || isEmpty(header)) {
+				return null;
+			} else if (count < BLOCK_SIZE) {
+				throw new EOFException("Truncated tar header");
+			}
+
+			verifyChecksum();
+
+			long size = parseNumber(124, 12);
+			byte type = header[156];
+
+			remaining = size;
+			padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+
+			if (type == GNU_LONG_NAME) {
+				longName = parseString(readContent(size), 0, (int) size);
+			} else if (type == PAX_HEADER) {
+				byte[] records = readContent(size);
+				paxPath = getPaxRecord(records, "path");
+				String sizeRecord = getPaxRecord(records, "size");
+				paxSize = sizeRecord != null ? Long.valueOf(sizeRecord) : null;
+			} else if (type == PAX_GLOBAL_HEADER) {
+				continue;
+			} else {
+
+				String name = parseString(header, 0, 100);
+				String prefix = parseString(header, 345, 155);
+				if (isUstar() && !prefix.isEmpty()) {
+					name = prefix + "/" + name;
+				}
+
+				if (paxPath != null) {
+					name = paxPath;
+				} else if (longName != null) {
+					name = longName;
+				}
+
+				if (paxSize != null) {
+					size = paxSize;
+					remaining = size;
+					padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+				}
+
+				// Regular and contiguous files (and regular files of pre-POSIX archives)
+				boolean isFile = type == '0' || type == 0 || type == '7';
+
+				return new Entry(name, size, isFile);
+			}
+		}
+	}
+
+	private byte[] readContent(long size) throws IOException {
+
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Tar header too large");
+		}
+
+		byte[] content = new byte[(int) size];
+		IOUtils.readFully(in, content);
+		remaining = 0;
+
+		return content;
+	}
+
+	private static boolean isEmpty(byte[] block) {
+
+		for (byte b : block) {
+			if (b != 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private boolean isUstar() {
+
+		return parseString(header, 257, 5).equals("ustar");
+	}
+
+	private void verifyChecksum() throws IOException {
+
+		long checksum = 0;
+
+		for (int i = 0; i < BLOCK_SIZE; i++) {
+			// The checksum field itself is summed as spaces
+			checksum += i >= 148 && i < 156 ? ' ' : header[i] & 0xFF;
+		}
+
+		if (checksum != parseNumber(148, 8)) {
+			throw new IOException("Invalid tar header checksum");
+		}
+	}
+
+	/**
+	 * Parses a numeric header field, which is either an octal string or a big-endian binary number (flagged by the
+	 * high bit of its first byte).
+	 */
+	private long parseNumber(int offset, int length) throws IOException {
+
+		long value = 0;
+
+		if ((header[offset] & 0x80) != 0) {
+			value = header[offset] & 0x7F;
+			for (int i = offset + 1; i < offset + length; i++) {
+				value = (value << 8) | (header[i] & 0xFF);
+			}
+			return value;
+		}
+
+		for (int i = offset; i < offset + length; i++) {
+			byte b = header[i];
+			if (b == 0 || b == ' ') {
+				if (value != 0) {
+					break;
+				}
+			} else if (b >= '0' && b <= '7') {
+				value = (value << 3) + b - '0';
+			} else {
+				throw new IOException("Invalid number in tar header");
+			}
+		}
+
+		return value;
+	}
+
+	private static String parseString(byte[] bytes, int offset, int length) {
+
+		int end = offset;
+		while (end < offset + length && bytes[end] != 0) {
+			end++;
+		}
+
+		return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Retrieves the value of the specified key from the records of a pax extended header ("length key=value\n").
+	 */
+	private static String getPaxRecord(byte[] records, String key) throws IOException {
+
+		int position = 0;
+
+		while (position < records.length && records[position] != 0) {
+
+			int separator = position;
+			while (separator < records.length && records[separator] != ' ') {
+				separator++;
+			}
+
+			int length;
+			try {
+				length = Integer.parseInt(new String(records, position, separator - position, StandardCharsets.UTF_8));
+			} catch (NumberFormatException ex) {
+				throw new IOException("Invalid pax header record", ex);
+			}
+
+			if (length <= separator - position || position + length > records.length) {
+				throw new IOException("Invalid pax header record");
+			}
+
+			String record = new String(records, separator + 1, position + length - separator - 2,
+					StandardCharsets.UTF_8);
+			int equals = record.indexOf('=');
+			if (equals != -1 && record.substring(0, equals).equals(key)) {
+				return record.substring(equals + 1);
+			}
+
+			position += length;
+		}
+
+		return null;
+	}
+
+	@Override
+	public int read() throws IOException {
+
+		if (remaining == 0) {
+			return -1;
+		}
+
+		int b = in.read();
+		if (b == -1) {
+			throw new EOFException("Truncated tar entry");
+		}
+		remaining--;
+
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+
+		if (len == 0) {
+			return 0;
+		}
+
+		if (remaining == 0) {
+			return -1;
+		}
+
+		int count = in.read(b, off, (int) Math.min(len, remaining));
+		if (count == -1) {
+			throw new EOFException("Truncated tar entry");
+		}
+		remaining -= count;
+
+		return count;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+
+		long count = in.skip(Math.min(n, remaining));
+		remaining -= count;
+
+		return count;
+	}
+
+	@Override
+	public int available() throws IOException {
+
+		return (int) Math.min(remaining, in.available());
+	}
+
+	@Override
+	public boolean markSupported() {
+
+		return false;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+
+		// Marking is not supported
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+
+		throw new IOException("mark/reset not supported");
+	}
+
+	/**
+	 * An entry of a tar archive.
+	 */
+	static final class Entry {
+
+		private final String name;
+
+		private final long size;
+
+		private final boolean isFile;
+
+		private Entry(String name, long size, boolean isFile) {
+
+			this.name = name;
+			this.size = size;
+			this.isFile = isFile;
+		}
+
+		String getName() {
+
+			return name;
+		}
+
+		long getSize() {
+
+			return size;
+		}
+
+		/**
+		 * Checks whether the entry is a regular file (as opposed to e.g. a directory or a link).
+		 */
+		boolean isFile() {
+
+			return isFile;
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.source;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import com.documaster.validator.validation.noark5.source.DocumentReader.PendingDocument;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An extraction package that is read from a (gzip-compressed) tar archive.
+ * <p/>
+ * As a tar archive can only be read sequentially, the whole archive is read once when the source is opened: the XML
+ * files and schemas are extracted, and every other entry is read as a document. The verification of the documents
+ * that requires a copy of them (see {@link DocumentReader}) is deferred to a queue of at most
+ * {@value #VERIFICATIONS_PER_THREAD} documents per thread that is worked off while the archive is read on; once the
+ * queue is full, the documents are verified by the reading thread.
+ */
+final class TarSource extends ArchiveSource {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TarSource.class);
+
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	private static final int VERIFICATIONS_PER_THREAD = 2;
+
+	private final Map<String, Future<DocumentInfo>> documents = new HashMap<>();
+
+	TarSource(File archive, boolean isCompressed, int threads) throws IOException {
+
+		LOGGER.info("Reading {} ...", archive);
+
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(
+				threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(threads * VERIFICATIONS_PER_THREAD),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+
+		try (TarInputStream tar = new TarInputStream(open(archive, isCompressed))) {
+
+			TarInputStream.Entry entry;
+			while ((entry = tar.getNextEntry()) != null) {
+
+				String name = normalize(entry.getName());
+				if (!entry.isFile() || name == null) {
+					continue;
+				}
+
+				if (isEntity(name)) {
+					extract(name, tar);
+				} else {
+					PendingDocument document = getDocumentReader().read(tar, name);
+					documents.put(name, executor.submit(document::verify));
+				}
+			}
+
+			LOGGER.info("Read {} documents of {}", documents.size(), archive);
+
+		} catch (IOException | RuntimeException ex) {
+			executor.shutdownNow();
+			IOUtils.closeQuietly(this);
+			throw ex;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static InputStream open(File archive, boolean isCompressed) throws IOException {
+
+		InputStream is = new BufferedInputStream(new FileInputStream(archive), BUFFER_SIZE);
+
+		try {
+			return isCompressed ? new GZIPInputStream(is, BUFFER_SIZE) : is;
+		} catch (IOException ex) {
+			IOUtils.closeQuietly(is);
+			throw ex;
+		}
+	}
+
+	@Override
+	DocumentInfo findDocument(String name) throws IOException {
+
+		Future<DocumentInfo> document = documents.get(name);
+
+		if (document == null) {
+			return null;
+		}
+
+		try {
+			return document.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while verifying " + name);
+		} catch (ExecutionException ex) {
+			throw new IOException("Could not verify " + name, ex.getCause());
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.source;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An extraction package that is read from a zip archive. The documents are read on demand, as the central directory
+ * of the archive allows random access to its entries.
+ */
+final class ZipSource extends ArchiveSource {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ZipSource.class);
+
+	private ZipFile zipFile;
+
+	ZipSource(File archive) throws IOException {
+
+		LOGGER.info("Extracting the XML files of {} ...", archive);
+
+		try {
+			zipFile = new ZipFile(archive);
+
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+
+				ZipEntry entry = entries.nextElement();
+				String name = normalize(entry.getName());
+
+				if (!entry.isDirectory() && name != null && isEntity(name)) {
+					try (InputStream is = zipFile.getInputStream(entry)) {
+						extract(name, is);
+					}
+				}
+			}
+		} catch (IOException | RuntimeException ex) {
+			IOUtils.closeQuietly(this);
+			throw ex;
+		}
+	}
+
+	@Override
+	DocumentInfo findDocument(String name) throws IOException {
+
+		ZipEntry entry = zipFile.getEntry(name);
+
+		if (entry == null || entry.isDirectory()) {
+			return null;
+		}
+
+		try (InputStream is = zipFile.getInputStream(entry)) {
+			return getDocumentReader().read(is, name).verify();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		try {
+			super.close();
+		} finally {
+			if (zipFile != null) {
+				zipFile.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,283 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.validators;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.ValidatorHandler;
+
+import com.documaster.validator.validation.utils.AbstractReusableXMLHandler;
+import com.documaster.validator.validation.utils.ChecksumInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * Reads the XML file of an {@link XMLValidation} once and forwards the parse events to all of the file's checks: the
+ * well-formedness check, a {@link ValidatorHandler} per set of schemas, and, optionally, a content filter that
+ * processes the content of the file.
+ * <p/>
+ * Each check (branch) records its exceptions exactly as if it had read the file on its own. An exception raised by a
+ * branch only stops forwarding events to that branch, so that the other branches still process the whole file.
+ */
+final class SinglePassParser implements ContentHandler, ErrorHandler {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SinglePassParser.class);
+
+	private final XMLValidation validation;
+
+	private final List<Branch> branches = new ArrayList<>();
+
+	/**
+	 * @param contentFilter
+	 * 		The filter whose content and error handlers should receive the parse events or null if the content of the
+	 * 		file is not needed
+	 */
+	SinglePassParser(XMLValidation validation, XMLFilterImpl contentFilter) {
+
+		this.validation = validation;
+
+		AbstractReusableXMLHandler integrityHandler = validation.getIntegrityHandler();
+		branches.add(new Branch(integrityHandler, integrityHandler, ex -> {
+			LOGGER.error("Well-formed XML validation failed with exception: ", ex);
+			integrityHandler.fatalError(new SAXParseException(ex.getMessage(), null));
+		}));
+
+		SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+
+		for (NoarkXMLHandler.Schema schemaType : validation.getSchemaTypes()) {
+
+			NoarkXMLHandler schemaHandler = validation.getSchemaHandler(schemaType);
+			Consumer<Exception> onFailure = ex -> {
+				LOGGER.error("Schema validation failed with exception: ", ex);
+				schemaHandler.fatalError(new SAXParseException(ex.getMessage(), null));
+			};
+
+			try {
+				StreamSource[] sources = validation.getSchemas(schemaType).stream()
+						.map(StreamSource::new).toArray(StreamSource[]::new);
+
+				ValidatorHandler validatorHandler = schemaFactory.newSchema(sources).newValidatorHandler();
+				validatorHandler.setContentHandler(schemaHandler);
+				validatorHandler.setErrorHandler(schemaHandler);
+
+				branches.add(new Branch(validatorHandler, schemaHandler, onFailure));
+
+			} catch (Exception ex) {
+				onFailure.accept(ex);
+			}
+		}
+
+		if (contentFilter != null) {
+			branches.add(new Branch(contentFilter, contentFilter, validation::setContentFailure));
+		}
+	}
+
+	void parse() {
+
+		File xmlFile = validation.getEntity().getXmlFile();
+
+		SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+		saxParserFactory.setNamespaceAware(true);
+
+		try (ChecksumInputStream is = new ChecksumInputStream(xmlFile)) {
+
+			XMLReader reader = saxParserFactory.newSAXParser().getXMLReader();
+			reader.setContentHandler(this);
+			reader.setErrorHandler(this);
+			reader.parse(new InputSource(is));
+
+			validation.setXMLFileChecksum(is.getChecksum());
+
+		} catch (Exception ex) {
+			for (Branch branch : branches) {
+				branch.fail(ex);
+			}
+		}
+	}
+
+	private void forwardContent(ContentEvent event) {
+
+		for (Branch branch : branches) {
+			if (branch.isActive()) {
+				try {
+					event.send(branch.contentHandler);
+				} catch (SAXException | RuntimeException ex) {
+					branch.fail(ex);
+				}
+			}
+		}
+	}
+
+	private void forwardError(ErrorEvent event) {
+
+		for (Branch branch : branches) {
+			if (branch.isActive()) {
+				try {
+					event.send(branch.errorHandler);
+				} catch (SAXException | RuntimeException ex) {
+					branch.fail(ex);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void setDocumentLocator(Locator locator) {
+
+		forwardContent(handler -> handler.setDocumentLocator(locator));
+	}
+
+	@Override
+	public void startDocument() {
+
+		forwardContent(ContentHandler::startDocument);
+	}
+
+	@Override
+	public void endDocument() {
+
+		forwardContent(ContentHandler::endDocument);
+	}
+
+	@Override
+	public void startPrefixMapping(String prefix, String uri) {
+
+		forwardContent(handler -> handler.startPrefixMapping(prefix, uri));
+	}
+
+	@Override
+	public void endPrefixMapping(String prefix) {
+
+		forwardContent(handler -> handler.endPrefixMapping(prefix));
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes atts) {
+
+		forwardContent(handler -> handler.startElement(uri, localName, qName, atts));
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName) {
+
+		forwardContent(handler -> handler.endElement(uri, localName, qName));
+	}
+
+	@Override
+	public void characters(char[] ch, int start, int length) {
+
+		forwardContent(handler -> handler.characters(ch, start, length));
+	}
+
+	@Override
+	public void ignorableWhitespace(char[] ch, int start, int length) {
+
+		forwardContent(handler -> handler.ignorableWhitespace(ch, start, length));
+	}
+
+	@Override
+	public void processingInstruction(String target, String data) {
+
+		forwardContent(handler -> handler.processingInstruction(target, data));
+	}
+
+	@Override
+	public void skippedEntity(String name) {
+
+		forwardContent(handler -> handler.skippedEntity(name));
+	}
+
+	@Override
+	public void warning(SAXParseException exception) {
+
+		forwardError(handler -> handler.warning(exception));
+	}
+
+	@Override
+	public void error(SAXParseException exception) {
+
+		forwardError(handler -> handler.error(exception));
+	}
+
+	@Override
+	public void fatalError(SAXParseException exception) {
+
+		forwardError(handler -> handler.fatalError(exception));
+	}
+
+	@FunctionalInterface
+	private interface ContentEvent {
+
+		void send(ContentHandler handler) throws SAXException;
+	}
+
+	@FunctionalInterface
+	private interface ErrorEvent {
+
+		void send(ErrorHandler handler) throws SAXException;
+	}
+
+	/**
+	 * A receiver of the parse events that stops receiving them once it fails.
+	 */
+	private static final class Branch {
+
+		private final ContentHandler contentHandler;
+
+		private final ErrorHandler errorHandler;
+
+		private final Consumer<Exception> onFailure;
+
+		private boolean failed = false;
+
+		private Branch(ContentHandler contentHandler, ErrorHandler errorHandler, Consumer<Exception> onFailure) {
+
+			this.contentHandler = contentHandler;
+			this.errorHandler = errorHandler;
+			this.onFailure = onFailure;
+		}
+
+		private boolean isActive() {
+
+			return !failed;
+		}
+
+		private void fail(Exception ex) {
+
+			if (!failed) {
+				failed = true;
+				onFailure.accept(ex);
+			}
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.noark5.validators;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.documaster.validator.validation.noark5.model.Noark5PackageEntity;
+import com.documaster.validator.validation.utils.DefaultXMLHandler;
+
+/**
+ * The handlers that collect the exceptions raised while checking the well-formedness of the XML file of a
+ * {@link Noark5PackageEntity} and while validating the file against each of its sets of schemas.
+ * <p/>
+ * The collected exceptions are reported by {@link XMLValidator#isValid(XMLValidation, boolean)}.
+ */
+public class XMLValidation {
+
+	private final Noark5PackageEntity entity;
+
+	private final DefaultXMLHandler integrityHandler = new DefaultXMLHandler();
+
+	private final Map<NoarkXMLHandler.Schema, NoarkXMLHandler> schemaHandlers =
+			new EnumMap<>(NoarkXMLHandler.Schema.class);
+
+	private Exception contentFailure;
+
+	private String xmlFileChecksum;
+
+	XMLValidation(Noark5PackageEntity entity) {
+
+		this.entity = entity;
+
+		schemaHandlers.put(NoarkXMLHandler.Schema.PACKAGE, new NoarkXMLHandler(NoarkXMLHandler.Schema.PACKAGE));
+		schemaHandlers.put(NoarkXMLHandler.Schema.NOARK, new NoarkXMLHandler(NoarkXMLHandler.Schema.NOARK));
+
+		if (entity.hasCustomSchemas()) {
+			schemaHandlers.put(NoarkXMLHandler.Schema.CUSTOM, new NoarkXMLHandler(NoarkXMLHandler.Schema.CUSTOM));
+		}
+	}
+
+	public Noark5PackageEntity getEntity() {
+
+		return entity;
+	}
+
+	DefaultXMLHandler getIntegrityHandler() {
+
+		return integrityHandler;
+	}
+
+	/**
+	 * Retrieves the types of the schema sets the XML file is validated against in validation order.
+	 */
+	Set<NoarkXMLHandler.Schema> getSchemaTypes() {
+
+		return schemaHandlers.keySet();
+	}
+
+	NoarkXMLHandler getSchemaHandler(NoarkXMLHandler.Schema schemaType) {
+
+		return schemaHandlers.get(schemaType);
+	}
+
+	List<File> getSchemas(NoarkXMLHandler.Schema schemaType) {
+
+		switch (schemaType) {
+			case PACKAGE:
+				return entity.getPackageSchemas();
+			case NOARK:
+				return entity.getNoarkSchemas();
+			case CUSTOM:
+				return entity.getCustomSchemas();
+			default:
+				throw new IllegalArgumentException("Unknown schema type: " + schemaType);
+		}
+	}
+
+	/**
+	 * Retrieves the exception raised by the content handlers the XML file was forwarded to while it was validated in a
+	 * single pass.
+	 *
+	 * @return The exception or null if the content was processed successfully
+	 */
+	public Exception getContentFailure() {
+
+		return contentFailure;
+	}
+
+	void setContentFailure(Exception contentFailure) {
+
+		this.contentFailure = contentFailure;
+	}
+
+	/**
+	 * Retrieves the SHA-256 checksum of the XML file that was calculated while the file was validated in a single pass.
+	 *
+	 * @return The checksum or null if the file was not read completely
+	 */
+	public String getXMLFileChecksum() {
+
+		return xmlFileChecksum;
+	}
+
+	void setXMLFileChecksum(String xmlFileChecksum) {
+
+		this.xmlFileChecksum = xmlFileChecksum;
+	}
+}
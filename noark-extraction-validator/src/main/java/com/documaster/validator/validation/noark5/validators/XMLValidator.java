@@ -30,6 +30,7 @@ import com.documaster.validator.validation.utils.SchemaValidator;
 import com.documaster.validator.validation.utils.WellFormedXmlValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.helpers.XMLFilterImpl;
 
 public class XMLValidator {
 
@@ -42,10 +43,64 @@ public class XMLValidator {
 		this.collector = collector;
 	}
 
+	/**
+	 * Validates the XML file of the specified entity, reading the file once per check, and collects the result.
+	 *
+	 * @return Whether the extraction validation can continue
+	 */
 	public boolean isValid(Noark5PackageEntity entity, boolean ignoreNonComplianceToSchema) {
 
 		LOGGER.info("Validating XML File {} ...", entity.getXmlFile());
 
+		XMLValidation validation = new XMLValidation(entity);
+		File xmlFile = entity.getXmlFile();
+
+		if (xmlFile.isFile()) {
+
+			new WellFormedXmlValidator<>(validation.getIntegrityHandler()).isXmlWellFormed(xmlFile);
+
+			for (NoarkXMLHandler.Schema schemaType : validation.getSchemaTypes()) {
+				new SchemaValidator<>(validation.getSchemaHandler(schemaType))
+						.isXmlFileValid(xmlFile, validation.getSchemas(schemaType));
+			}
+		}
+
+		return isValid(validation, ignoreNonComplianceToSchema);
+	}
+
+	/**
+	 * Validates the XML file of the specified entity in a single read, forwarding the parsed content to the specified
+	 * filter. The result is collected once {@link #isValid(XMLValidation, boolean)} is invoked.
+	 * <p/>
+	 * Exceptions raised by the handlers of the filter do not stop the validation and are retrievable from
+	 * {@link XMLValidation#getContentFailure()}.
+	 *
+	 * @param contentFilter
+	 * 		The filter whose content and error handlers should receive the parse events or null if the content of the
+	 * 		file is not needed
+	 */
+	public static XMLValidation validateInSinglePass(Noark5PackageEntity entity, XMLFilterImpl contentFilter) {
+
+		LOGGER.info("Validating XML File {} in a single pass ...", entity.getXmlFile());
+
+		XMLValidation validation = new XMLValidation(entity);
+
+		if (entity.getXmlFile().isFile()) {
+			new SinglePassParser(validation, contentFilter).parse();
+		}
+
+		return validation;
+	}
+
+	/**
+	 * Collects the result of the specified {@link XMLValidation}.
+	 *
+	 * @return Whether the extraction validation can continue
+	 */
+	public boolean isValid(XMLValidation validation, boolean ignoreNonComplianceToSchema) {
+
+		Noark5PackageEntity entity = validation.getEntity();
+
 		ValidationResult result = new ValidationResult(
 				ValidationGroup.PACKAGE.getNextGroupId(collector), entity.getXmlFileName() + " integrity",
 				"Tests whether the XML file 1) exists, 2) is valid XML, 3) complies with the Noark schemas, "
@@ -53,20 +108,21 @@ public class XMLValidator {
 				ValidationGroup.PACKAGE.getName());
 
 		boolean exists = validateExistence(entity.getXmlFile(), result);
-		boolean isWellFormed = validateIntegrity(entity.getXmlFile(), result);
+		boolean isWellFormed = validateIntegrity(entity.getXmlFile(), validation.getIntegrityHandler(), result);
+
+		boolean compliesWithNoarkSchemas = true;
 
-		// Package schemas
-		validateAgainstSchemas(
-				entity.getXmlFile(), result, entity.getPackageSchemas(), NoarkXMLHandler.Schema.PACKAGE, false);
+		for (NoarkXMLHandler.Schema schemaType : validation.getSchemaTypes()) {
 
-		// Noark schemas
-		boolean compliesWithNoarkSchemas = validateAgainstSchemas(
-				entity.getXmlFile(), result, entity.getNoarkSchemas(), NoarkXMLHandler.Schema.NOARK, true);
+			// Non-compliance to the package schemas is reported as warnings
+			boolean isError = schemaType != NoarkXMLHandler.Schema.PACKAGE;
 
-		// Custom schemas
-		if (entity.hasCustomSchemas()) {
-			validateAgainstSchemas(
-					entity.getXmlFile(), result, entity.getCustomSchemas(), NoarkXMLHandler.Schema.CUSTOM, true);
+			boolean isCompliant = validateAgainstSchemas(
+					entity.getXmlFile(), result, validation.getSchemaHandler(schemaType), schemaType, isError);
+
+			if (schemaType == NoarkXMLHandler.Schema.NOARK) {
+				compliesWithNoarkSchemas = isCompliant;
+			}
 		}
 
 		collector.collect(result);
@@ -85,12 +141,10 @@ public class XMLValidator {
 		}
 	}
 
-	private static boolean validateIntegrity(File xmlFile, ValidationResult result) {
+	private static boolean validateIntegrity(File xmlFile, DefaultXMLHandler handler, ValidationResult result) {
 
-		WellFormedXmlValidator xmlIntegrityValidator = new WellFormedXmlValidator<>(new DefaultXMLHandler());
-
-		if (!xmlFile.isFile() || !xmlIntegrityValidator.isXmlWellFormed(xmlFile)) {
-			result.addErrors(xmlIntegrityValidator.getExceptionHandler().getExceptionsAsItems());
+		if (!xmlFile.isFile() || handler.hasExceptions()) {
+			result.addErrors(handler.getExceptionsAsItems());
 			return false;
 		} else {
 			result.addInformation(new BaseItem().add("Information", xmlFile.getName() + " is well-formed"));
@@ -99,13 +153,10 @@ public class XMLValidator {
 	}
 
 	private static boolean validateAgainstSchemas(
-			File xmlFile, ValidationResult result, List<File> xsdSchemas, NoarkXMLHandler.Schema schemaType,
+			File xmlFile, ValidationResult result, NoarkXMLHandler handler, NoarkXMLHandler.Schema schemaType,
 			boolean isError) {
 
-		NoarkXMLHandler handler = new NoarkXMLHandler(schemaType);
-		SchemaValidator schemaValidator = new SchemaValidator<>(handler);
-
-		if (!xmlFile.isFile() || !schemaValidator.isXmlFileValid(xmlFile, xsdSchemas)) {
+		if (!xmlFile.isFile() || handler.hasExceptions()) {
 
 			// Report errors/warnings
 			List<BaseItem> exceptionsAsItems = handler.getExceptionsAsItems();
@@ -0,0 +1,187 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A file whose ranges are read through a single {@link FileChannel} with positional reads, which do not change the
+ * position of the channel and can therefore be issued by several threads at once.
+ * <p/>
+ * Each stream reads into a direct buffer of at most {@value FileChannelInputStream#BUFFER_SIZE} bytes of its own.
+ */
+final class ChannelFile implements RangeFile {
+
+	private final FileChannel channel;
+
+	private final long size;
+
+	ChannelFile(File file) throws IOException {
+
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.size = channel.size();
+	}
+
+	@Override
+	public long getSize() {
+
+		return size;
+	}
+
+	@Override
+	public InputStream open() {
+
+		return open(0, size);
+	}
+
+	@Override
+	public InputStream open(long start, long length) {
+
+		Validate.isTrue(start >= 0 && length >= 0 && start + length <= size, "Invalid range of the file");
+
+		return new RangeInputStream(channel, start, start + length);
+	}
+
+	/**
+	 * Closes the channel of the file. The streams that have been opened can no longer be read.
+	 */
+	@Override
+	public void close() throws IOException {
+
+		channel.close();
+	}
+
+	private static final class RangeInputStream extends InputStream {
+
+		private final FileChannel channel;
+
+		private final long end;
+
+		/**
+		 * The position in the file of the byte following the buffered ones
+		 */
+		private long position;
+
+		private ByteBuffer buffer;
+
+		private RangeInputStream(FileChannel channel, long start, long end) {
+
+			this.channel = channel;
+			this.position = start;
+			this.end = end;
+		}
+
+		@Override
+		public int read() throws IOException {
+
+			if (!hasRemaining()) {
+				return -1;
+			}
+
+			return buffer.get() & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+
+			if (len == 0) {
+				return 0;
+			}
+
+			if (!hasRemaining()) {
+				return -1;
+			}
+
+			int count = Math.min(len, buffer.remaining());
+			buffer.get(b, off, count);
+
+			return count;
+		}
+
+		/**
+		 * Checks whether any bytes of the range remain, reading the next ones into the buffer if all of the buffered
+		 * ones have been read.
+		 */
+		private boolean hasRemaining() throws IOException {
+
+			if (buffer != null && buffer.hasRemaining()) {
+				return true;
+			}
+
+			if (position >= end) {
+				return false;
+			}
+
+			if (buffer == null) {
+				buffer = ByteBuffer.allocateDirect((int) Math.min(FileChannelInputStream.BUFFER_SIZE, end - position));
+			}
+
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), end - position));
+
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) < 0) {
+					break;
+				}
+			}
+
+			buffer.flip();
+			position += buffer.limit();
+
+			return buffer.hasRemaining();
+		}
+
+		@Override
+		public long skip(long n) {
+
+			if (n <= 0) {
+				return 0;
+			}
+
+			long buffered = buffer != null ? buffer.remaining() : 0;
+			if (n <= buffered) {
+				buffer.position(buffer.position() + (int) n);
+				return n;
+			}
+
+			long count = buffered + Math.min(n - buffered, end - position);
+
+			position += count - buffered;
+			if (buffer != null) {
+				buffer.position(buffer.limit());
+			}
+
+			return count;
+		}
+
+		@Override
+		public int available() {
+
+			long buffered = buffer != null ? buffer.remaining() : 0;
+
+			return (int) Math.min(Integer.MAX_VALUE, buffered + end - position);
+		}
+	}
+}
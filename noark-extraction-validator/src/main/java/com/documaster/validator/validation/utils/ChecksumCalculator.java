@@ -20,6 +20,7 @@ package com.documaster.validator.validation.utils;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.util.List;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import org.slf4j.Logger;
@@ -38,4 +39,26 @@ public class ChecksumCalculator {
 			return null;
 		}
 	}
+
+	/**
+	 * Calculates a single checksum over the names and contents of the specified files in the order they are given.
+	 *
+	 * @return The checksum or null if the checksum of any of the files could not be calculated
+	 */
+	public static String getFilesSha256Checksum(List<File> files) {
+
+		StringBuilder checksums = new StringBuilder();
+
+		for (File file : files) {
+
+			String checksum = getFileSha256Checksum(file);
+			if (checksum == null) {
+				return null;
+			}
+
+			checksums.append(file.getName()).append(':').append(checksum).append('\n');
+		}
+
+		return DigestUtils.sha256Hex(checksums.toString());
+	}
 }
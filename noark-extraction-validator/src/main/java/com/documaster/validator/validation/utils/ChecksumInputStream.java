@@ -0,0 +1,129 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.utils;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * A stream of a file opened with {@link XMLInput} that calculates the SHA-256 checksum of the file while it is read,
+ * so that a file that is parsed anyway does not need to be read again only to calculate its checksum.
+ * <p/>
+ * Skipped bytes are read as well, so that they are included in the checksum.
+ */
+public class ChecksumInputStream extends FilterInputStream {
+
+	private final long length;
+
+	private final MessageDigest digest = DigestUtils.getSha256Digest();
+
+	private long position = 0;
+
+	private String checksum;
+
+	public ChecksumInputStream(File file) throws IOException {
+
+		super(XMLInput.open(file));
+
+		this.length = file.length();
+	}
+
+	@Override
+	public int read() throws IOException {
+
+		int b = in.read();
+
+		if (b != -1) {
+			digest.update((byte) b);
+			position++;
+		}
+
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+
+		int count = in.read(b, off, len);
+
+		if (count > 0) {
+			digest.update(b, off, count);
+			position += count;
+		}
+
+		return count;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+
+		if (n <= 0) {
+			return 0;
+		}
+
+		byte[] buffer = new byte[(int) Math.min(n, 8192)];
+		long skipped = 0;
+
+		while (skipped < n) {
+			int count = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+			if (count == -1) {
+				break;
+			}
+			skipped += count;
+		}
+
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+
+		return false;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+
+		// Marking is not supported, as reset bytes would be included in the checksum twice
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+
+		throw new IOException("mark/reset not supported");
+	}
+
+	/**
+	 * Retrieves the SHA-256 checksum of the file as a hex string.
+	 *
+	 * @return The checksum or null if the file has not been read completely
+	 */
+	public String getChecksum() {
+
+		if (checksum == null && position == length) {
+			checksum = Hex.encodeHexString(digest.digest());
+		}
+
+		return checksum;
+	}
+}
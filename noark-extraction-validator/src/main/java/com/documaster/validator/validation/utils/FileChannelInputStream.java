@@ -0,0 +1,114 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A stream of a file that is read through a {@link FileChannel} into a large direct buffer.
+ */
+final class FileChannelInputStream extends InputStream {
+
+	static final int BUFFER_SIZE = 1024 * 1024;
+
+	private final FileChannel channel;
+
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	FileChannelInputStream(File file) throws IOException {
+
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+		buffer.flip();
+	}
+
+	@Override
+	public int read() throws IOException {
+
+		if (!buffer.hasRemaining() && !fill()) {
+			return -1;
+		}
+
+		return buffer.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+
+		if (len == 0) {
+			return 0;
+		}
+
+		if (!buffer.hasRemaining() && !fill()) {
+			return -1;
+		}
+
+		int count = Math.min(len, buffer.remaining());
+		buffer.get(b, off, count);
+
+		return count;
+	}
+
+	private boolean fill() throws IOException {
+
+		buffer.clear();
+		int count = channel.read(buffer);
+		buffer.flip();
+
+		return count > 0;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+
+		if (n <= 0) {
+			return 0;
+		}
+
+		if (n <= buffer.remaining()) {
+			buffer.position(buffer.position() + (int) n);
+			return n;
+		}
+
+		long skipped = buffer.remaining();
+		buffer.position(buffer.limit());
+
+		long position = channel.position();
+		long newPosition = Math.min(channel.size(), position + n - skipped);
+		channel.position(newPosition);
+
+		return skipped + newPosition - position;
+	}
+
+	@Override
+	public int available() throws IOException {
+
+		return (int) Math.min(Integer.MAX_VALUE, buffer.remaining() + channel.size() - channel.position());
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		channel.close();
+	}
+}
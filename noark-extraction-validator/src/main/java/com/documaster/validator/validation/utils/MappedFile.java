@@ -0,0 +1,179 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A file that is memory-mapped as a whole, so that its ranges are read without any read calls.
+ * <p/>
+ * The file is mapped in segments of at most {@value #SEGMENT_SIZE} bytes. Unlike {@link MappedFileInputStream}, the
+ * address space used is the size of the whole file. The segments are unmapped once they have been garbage-collected.
+ */
+final class MappedFile implements RangeFile {
+
+	static final int SEGMENT_SIZE = 1024 * 1024 * 1024;
+
+	private final long size;
+
+	private MappedByteBuffer[] segments;
+
+	MappedFile(File file) throws IOException {
+
+		// The mapping remains valid once the channel is closed
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+			size = channel.size();
+			segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+
+			for (int i = 0; i < segments.length; i++) {
+				long segmentStart = (long) i * SEGMENT_SIZE;
+				segments[i] = channel.map(
+						FileChannel.MapMode.READ_ONLY, segmentStart, Math.min(SEGMENT_SIZE, size - segmentStart));
+			}
+		}
+	}
+
+	@Override
+	public long getSize() {
+
+		return size;
+	}
+
+	@Override
+	public InputStream open() {
+
+		return open(0, size);
+	}
+
+	@Override
+	public InputStream open(long start, long length) {
+
+		Validate.isTrue(start >= 0 && length >= 0 && start + length <= size, "Invalid range of the mapped file");
+
+		if (segments == null) {
+			throw new IllegalStateException("The mapped file has been closed");
+		}
+
+		return new RangeInputStream(segments, start, start + length);
+	}
+
+	/**
+	 * Releases the mapping of the file. The streams that have been opened remain readable until they are
+	 * garbage-collected.
+	 */
+	@Override
+	public void close() {
+
+		segments = null;
+	}
+
+	private static final class RangeInputStream extends InputStream {
+
+		private final MappedByteBuffer[] segments;
+
+		private final long end;
+
+		private long position;
+
+		/**
+		 * A view of the segment that contains the current position, positioned at it
+		 */
+		private ByteBuffer segment;
+
+		private RangeInputStream(MappedByteBuffer[] segments, long start, long end) {
+
+			this.segments = segments;
+			this.position = start;
+			this.end = end;
+		}
+
+		@Override
+		public int read() {
+
+			if (!hasRemaining()) {
+				return -1;
+			}
+
+			position++;
+
+			return segment.get() & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+
+			if (len == 0) {
+				return 0;
+			}
+
+			if (!hasRemaining()) {
+				return -1;
+			}
+
+			int count = (int) Math.min(Math.min(len, segment.remaining()), end - position);
+			segment.get(b, off, count);
+			position += count;
+
+			return count;
+		}
+
+		/**
+		 * Checks whether any bytes of the range remain, switching to the next segment if the current one has been
+		 * read completely.
+		 */
+		private boolean hasRemaining() {
+
+			if (position >= end) {
+				return false;
+			}
+
+			if (segment == null || !segment.hasRemaining()) {
+				segment = segments[(int) (position / SEGMENT_SIZE)].duplicate();
+				segment.position((int) (position % SEGMENT_SIZE));
+			}
+
+			return true;
+		}
+
+		@Override
+		public long skip(long n) {
+
+			long count = Math.max(0, Math.min(n, end - position));
+
+			position += count;
+			segment = null;
+
+			return count;
+		}
+
+		@Override
+		public int available() {
+
+			return (int) Math.min(Integer.MAX_VALUE, end - position);
+		}
+	}
+}
@@ -0,0 +1,137 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A stream of a file that is memory-mapped in consecutive windows, so that the address space used by a large file is
+ * bounded. A window is unmapped once it has been garbage-collected.
+ */
+final class MappedFileInputStream extends InputStream {
+
+	static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+	private final FileChannel channel;
+
+	private final long size;
+
+	/**
+	 * The position of the first byte of the current window in the file
+	 */
+	private long windowStart = 0;
+
+	private MappedByteBuffer window;
+
+	MappedFileInputStream(File file) throws IOException {
+
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.size = channel.size();
+	}
+
+	@Override
+	public int read() throws IOException {
+
+		if (!hasRemaining()) {
+			return -1;
+		}
+
+		return window.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+
+		if (len == 0) {
+			return 0;
+		}
+
+		if (!hasRemaining()) {
+			return -1;
+		}
+
+		int count = Math.min(len, window.remaining());
+		window.get(b, off, count);
+
+		return count;
+	}
+
+	/**
+	 * Checks whether any bytes remain, mapping the next window if the current one has been read completely.
+	 */
+	private boolean hasRemaining() throws IOException {
+
+		if (window != null && window.hasRemaining()) {
+			return true;
+		}
+
+		long position = getPosition();
+
+		if (position >= size) {
+			return false;
+		}
+
+		windowStart = position;
+		window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(WINDOW_SIZE, size - windowStart));
+
+		return true;
+	}
+
+	private long getPosition() {
+
+		return window != null ? windowStart + window.position() : windowStart;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+
+		if (n <= 0) {
+			return 0;
+		}
+
+		long position = getPosition();
+		long newPosition = Math.min(size, position + n);
+
+		if (window != null && newPosition - windowStart < window.limit()) {
+			window.position((int) (newPosition - windowStart));
+		} else {
+			window = null;
+			windowStart = newPosition;
+		}
+
+		return newPosition - position;
+	}
+
+	@Override
+	public int available() {
+
+		return (int) Math.min(Integer.MAX_VALUE, size - getPosition());
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		window = null;
+		channel.close();
+	}
+}
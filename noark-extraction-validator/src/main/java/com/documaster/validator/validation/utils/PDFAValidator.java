@@ -25,6 +25,7 @@ import org.apache.pdfbox.preflight.PreflightDocument;
 import org.apache.pdfbox.preflight.ValidationResult;
 import org.apache.pdfbox.preflight.parser.PreflightParser;
 import org.apache.tika.Tika;
+import org.apache.tika.mime.MimeTypes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,6 +44,30 @@ public class PDFAValidator {
 		}
 	}
 
+	/**
+	 * Detects the type of a file from its name and the specified leading bytes of its content.
+	 *
+	 * @param prefix
+	 * 		The first (at most {@link #getDetectionLength()}) bytes of the file
+	 */
+	public static String getFileType(byte[] prefix, String name) {
+
+		try {
+			Tika tika = new Tika();
+			return tika.detect(prefix, name);
+		} catch (Exception ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Retrieves the number of leading bytes the detection of a file's type reads at most.
+	 */
+	public static int getDetectionLength() {
+
+		return MimeTypes.getDefaultMimeTypes().getMinLength();
+	}
+
 	public static boolean isValidPdfaFile(File file) throws IOException {
 
 		boolean isValidPdfAFile;
@@ -0,0 +1,46 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.utils;
+
+import java.io.Closeable;
+import java.io.InputStream;
+
+/**
+ * A file any number of ranges of which can be read concurrently without opening the file again or reading it through
+ * up to the start of a range (see {@link XMLInputType#openRanges(java.io.File)}).
+ */
+public interface RangeFile extends Closeable {
+
+	long getSize();
+
+	/**
+	 * Opens a stream of the whole file.
+	 */
+	InputStream open();
+
+	/**
+	 * Opens a stream of the specified range of the file. Each stream must be read by a single thread only, but the
+	 * streams of a file can be read concurrently.
+	 *
+	 * @param start
+	 * 		The offset of the first byte of the range
+	 * @param length
+	 * 		The number of bytes of the range
+	 */
+	InputStream open(long start, long length);
+}
@@ -18,6 +18,7 @@
 package com.documaster.validator.validation.utils;
 
 import java.io.File;
+import java.io.InputStream;
 import java.util.List;
 import javax.xml.XMLConstants;
 import javax.xml.parsers.SAXParser;
@@ -63,14 +64,14 @@ public class SchemaValidator<T extends AbstractReusableXMLHandler> {
 		saxParserFactory.setValidating(false);
 		saxParserFactory.setNamespaceAware(true);
 
-		try {
+		try (InputStream is = XMLInput.open(xmlFile)) {
 			StreamSource[] sources = xsdFiles.stream().map(StreamSource::new).toArray(StreamSource[]::new);
 
 			Schema schema = schemaFactory.newSchema(sources);
 			saxParserFactory.setSchema(schema);
 
 			SAXParser parser = saxParserFactory.newSAXParser();
-			parser.parse(xmlFile, handler);
+			parser.parse(is, handler, xmlFile.toURI().toString());
 
 		} catch (Exception ex) {
 			LOGGER.error("Schema validation failed with exception: ", ex);
@@ -17,9 +17,8 @@
  */
 package com.documaster.validator.validation.utils;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.InputStream;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
@@ -53,12 +52,10 @@ public class WellFormedXmlValidator<T extends AbstractReusableXMLHandler> {
 		SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
 		saxParserFactory.setNamespaceAware(true);
 
-		try (
-				FileInputStream fis = new FileInputStream(xmlFile);
-				BufferedInputStream bis = new BufferedInputStream(fis)) {
+		try (InputStream is = XMLInput.open(xmlFile)) {
 
 			SAXParser parser = saxParserFactory.newSAXParser();
-			parser.parse(bis, handler);
+			parser.parse(is, handler);
 
 		} catch (Exception ex) {
 			LOGGER.error("Well-formed XML validation failed with exception: ", ex);
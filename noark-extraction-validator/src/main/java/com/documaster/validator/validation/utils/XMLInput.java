@@ -0,0 +1,65 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Opens the XML files of an extraction package with the {@link XMLInputType} of the current validation, so that all
+ * of the files are read in the same way no matter which validator or parser reads them.
+ */
+public final class XMLInput {
+
+	private static volatile XMLInputType type = XMLInputType.BUFFERED;
+
+	private XMLInput() {
+
+		// Prevent instantiation
+	}
+
+	/**
+	 * Sets the {@link XMLInputType} the XML files are read with.
+	 */
+	public static void init(XMLInputType type) {
+
+		XMLInput.type = type;
+	}
+
+	public static XMLInputType getType() {
+
+		return type;
+	}
+
+	/**
+	 * Opens the specified XML file. The returned stream need not be buffered further.
+	 */
+	public static InputStream open(File file) throws IOException {
+
+		return type.open(file);
+	}
+
+	/**
+	 * Opens the specified XML file for reading ranges of it concurrently.
+	 */
+	public static RangeFile openRanges(File file) throws IOException {
+
+		return type.openRanges(file);
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.validation.utils;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The available ways of reading the XML files of an extraction package (see {@link XMLInput}).
+ */
+public enum XMLInputType {
+
+	/**
+	 * A {@link FileInputStream} with a default-sized buffer.
+	 */
+	BUFFERED,
+
+	/**
+	 * Reads of {@value FileChannelInputStream#BUFFER_SIZE} bytes into a direct buffer ({@link FileChannelInputStream}),
+	 * which keeps the number of reads small on remote filesystems (e.g. NFS).
+	 */
+	CHANNEL,
+
+	/**
+	 * Memory-mapped windows of {@value MappedFileInputStream#WINDOW_SIZE} bytes ({@link MappedFileInputStream}), which
+	 * avoids copying the files of a local filesystem through read calls.
+	 */
+	MEMORY_MAPPED;
+
+	public InputStream open(File file) throws IOException {
+
+		switch (this) {
+			case BUFFERED:
+				return new BufferedInputStream(new FileInputStream(file));
+			case CHANNEL:
+				return new FileChannelInputStream(file);
+			case MEMORY_MAPPED:
+				return new MappedFileInputStream(file);
+			default:
+				throw new IllegalStateException("Unknown XML input type: " + this);
+		}
+	}
+
+	/**
+	 * Opens the specified XML file for reading ranges of it concurrently. MEMORY_MAPPED maps the whole file
+	 * ({@link MappedFile}); the other types read it with positional reads of a single channel ({@link ChannelFile}).
+	 */
+	public RangeFile openRanges(File file) throws IOException {
+
+		return this == MEMORY_MAPPED ? new MappedFile(file) : new ChannelFile(file);
+	}
+}
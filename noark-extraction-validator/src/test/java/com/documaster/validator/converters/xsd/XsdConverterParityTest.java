@@ -0,0 +1,127 @@
+/**
+ * Noark Extraction Validator
+ * Copyright (C) 2016, Documaster AS
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.documaster.validator.converters.xsd;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.documaster.validator.config.commands.Noark53Command;
+import com.documaster.validator.config.commands.Noark54Command;
+import com.documaster.validator.config.commands.Noark55Command;
+import com.documaster.validator.config.commands.Noark5Command;
+import com.documaster.validator.converters.Converter;
+import com.documaster.validator.storage.model.Field;
+import com.documaster.validator.storage.model.Item;
+import com.documaster.validator.storage.model.ItemDef;
+import com.documaster.validator.validation.noark5.model.Noark5PackageStructure;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Verifies that {@link XsdModelConverter} produces the same {@link ItemDef}s and enumeration {@link Item}s as the
+ * {@link XsdConverter} it replaces for each bundled Noark 5 schema set.
+ */
+public class XsdConverterParityTest {
+
+	@Test
+	public void testNoark53() throws Exception {
+
+		assertParity(new Noark53Command());
+	}
+
+	@Test
+	public void testNoark54() throws Exception {
+
+		assertParity(new Noark54Command());
+	}
+
+	@Test
+	public void testNoark55() throws Exception {
+
+		assertParity(new Noark55Command());
+	}
+
+	private static void assertParity(Noark5Command command) throws Exception {
+
+		File schemasDirectory = Files.createTempDirectory("noark-extraction-validator-").toFile();
+
+		try {
+			Noark5PackageStructure structure = new Noark5PackageStructure(schemasDirectory, schemasDirectory);
+			structure.extractNoarkSchemas(command.getDefaultSchemaLocation());
+
+			Converter expected = new XsdConverter();
+			expected.convert(structure.getAllNoarkSchemaFiles());
+
+			Converter actual = new XsdModelConverter();
+			actual.convert(structure.getAllNoarkSchemaFiles());
+
+			String location = command.getDefaultSchemaLocation();
+
+			assertEquals(
+					"Item definitions of " + location,
+					new TreeMap<>(expected.getItemDefs()).keySet(), new TreeMap<>(actual.getItemDefs()).keySet());
+
+			for (ItemDef expectedItemDef : expected.getItemDefs().values()) {
+
+				ItemDef actualItemDef = actual.getItemDefs().get(expectedItemDef.getFullName());
+
+				assertEquals(
+						"Fields of " + location + " " + expectedItemDef.getFullName(),
+						getFieldTypes(expectedItemDef), getFieldTypes(actualItemDef));
+			}
+
+			assertEquals("Items of " + location, getItems(expected), getItems(actual));
+
+		} finally {
+			FileUtils.deleteQuietly(schemasDirectory);
+		}
+	}
+
+	private static Map<String, Field.FieldType> getFieldTypes(ItemDef itemDef) {
+
+		Map<String, Field.FieldType> fieldTypes = new TreeMap<>();
+
+		for (Map.Entry<String, Field> field : itemDef.getFields().entrySet()) {
+
+			assertEquals("Field name of " + itemDef.getFullName(), field.getKey(), field.getValue().getName());
+			fieldTypes.put(field.getKey(), field.getValue().getFieldType());
+		}
+
+		return fieldTypes;
+	}
+
+	private static List<String> getItems(Converter converter) throws Exception {
+
+		List<String> items = new ArrayList<>();
+
+		for (Item item : converter.getItems()) {
+			items.add(item.getItemDef().getFullName() + " " + new TreeMap<>(item.getValues()));
+		}
+
+		Collections.sort(items);
+
+		return items;
+	}
+}